@@ -24,9 +24,12 @@ import android.os.Environment;
 import android.widget.Toast;
 
 import com.daniel.mobilepauker2.activities.LessonImportActivity;
+import com.daniel.mobilepauker2.model.LessonSaver;
 import com.daniel.mobilepauker2.model.ModelManager;
 import com.daniel.mobilepauker2.model.pauker_native.Lesson;
+import com.daniel.mobilepauker2.model.xmlsupport.FlashCardBinaryCache;
 import com.daniel.mobilepauker2.model.xmlsupport.FlashCardXMLPullFeedParser;
+import com.daniel.mobilepauker2.model.xmlsupport.LessonJournal;
 import com.daniel.mobilepauker2.utils.Constants;
 import com.daniel.mobilepauker2.utils.Log;
 
@@ -222,11 +225,24 @@ public class PaukerManager {
     }
 
     public void loadLessonFromFile(File file) throws IOException {
-        URI uri = file.toURI();
-        FlashCardXMLPullFeedParser xmlFlashCardFeedParser = new FlashCardXMLPullFeedParser(uri.toURL());
-        Lesson lesson = xmlFlashCardFeedParser.parse();
+        Lesson lesson = FlashCardBinaryCache.read(file);
+        if (lesson == null) {
+            URI uri = file.toURI();
+            FlashCardXMLPullFeedParser xmlFlashCardFeedParser = new FlashCardXMLPullFeedParser(uri.toURL());
+            // Große Lektionen werden auf Mehrkerngeräten parallel eingelesen
+            int processors = Runtime.getRuntime().availableProcessors();
+            lesson = file.length() >= Constants.PARALLEL_LOAD_MIN_FILE_SIZE && processors > 1
+                    ? xmlFlashCardFeedParser.parseConcurrently(Math.min(processors, Constants.PARALLEL_LOAD_MAX_THREADS))
+                    : xmlFlashCardFeedParser.parse();
+            // Cache und Zusammenfassung werden im Hintergrund geschrieben, der Schnappschuss
+            // wird vor dem Journal genommen und entspricht damit der Datei
+            LessonSaver.instance().writeCaches(file, lesson.snapshot());
+        }
+        // Fortschritt seit dem letzten Speichern aus dem Journal übernehmen
+        LessonJournal journal = LessonJournal.open(file, lesson);
         setCurrentFileName(file.getName());
         setFileAbsolutePath(file.getAbsolutePath());
         ModelManager.instance().setLesson(lesson);
+        ModelManager.instance().setJournal(journal);
     }
 }
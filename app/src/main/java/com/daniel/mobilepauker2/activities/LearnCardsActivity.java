@@ -38,7 +38,6 @@ import com.daniel.mobilepauker2.utils.Log;
 import com.danilomendes.progressbar.InvertedTextProgressbar;
 
 import java.util.Locale;
-import java.util.Random;
 
 import static android.app.Notification.VISIBILITY_PUBLIC;
 import static android.view.View.GONE;
@@ -532,7 +531,8 @@ public class LearnCardsActivity extends FlashCardSwipeScreenActivity {
             }
 
             case REPEATING_LTM: {
-                if (modelManager.getExpiredCardsSize() <= 0) {
+                // Die letzte Karte ist wiederholt, der Planer hat keine weiteren mehr geliefert
+                if (completedLearning || modelManager.getExpiredCardsSize() <= 0) {
                     finishLearning();
                 } else {
                     /*initStackSize -= 1;
@@ -816,8 +816,7 @@ public class LearnCardsActivity extends FlashCardSwipeScreenActivity {
                     flipCardSides = true;
                     break;
                 case "2":
-                    Random rand = new Random();
-                    flipCardSides = rand.nextBoolean();
+                    flipCardSides = modelManager.getSessionRandom().nextBoolean();
                     break;
                 default:
                     flipCardSides = false;
@@ -869,7 +868,7 @@ public class LearnCardsActivity extends FlashCardSwipeScreenActivity {
         String text;
         if (repeatingLTM) {
             text = getString(R.string.expired).concat(": %d");
-            text = String.format(text, mCardCursor.getCount() - mCardCursor.getPosition());
+            text = String.format(text, modelManager.getRemainingReviewCount(mCardCursor.getPosition()));
             allCards.setText(text);
             ustmCards.setVisibility(GONE);
             stmCards.setVisibility(GONE);
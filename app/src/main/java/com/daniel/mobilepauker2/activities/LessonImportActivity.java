@@ -14,7 +14,6 @@ import android.support.v7.app.AlertDialog;
 import android.support.v7.app.AppCompatActivity;
 import android.text.Html;
 import android.text.format.DateFormat;
-import android.util.SparseLongArray;
 import android.view.ContextMenu;
 import android.view.Menu;
 import android.view.MenuItem;
@@ -31,8 +30,9 @@ import com.daniel.mobilepauker2.R;
 import com.daniel.mobilepauker2.dropbox.DropboxAccDialog;
 import com.daniel.mobilepauker2.dropbox.SyncDialog;
 import com.daniel.mobilepauker2.model.LessonImportAdapter;
+import com.daniel.mobilepauker2.model.LessonScanner;
 import com.daniel.mobilepauker2.model.ModelManager;
-import com.daniel.mobilepauker2.model.xmlsupport.FlashCardXMLPullFeedParser;
+import com.daniel.mobilepauker2.model.xmlsupport.LessonSummary;
 import com.daniel.mobilepauker2.utils.Constants;
 import com.daniel.mobilepauker2.utils.ErrorReporter;
 import com.daniel.mobilepauker2.utils.Log;
@@ -40,7 +40,6 @@ import com.dropbox.core.android.Auth;
 
 import java.io.File;
 import java.io.IOException;
-import java.net.URI;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
@@ -68,6 +67,8 @@ public class LessonImportActivity extends AppCompatActivity {
     private ListView listView;
     private SharedPreferences preferences;
     private File[] files = new File[0];
+    private LessonImportAdapter adapter;
+    private LessonScanner lessonScanner;
 
     /**
      * Speichert die letzte Selektion in der Liste.
@@ -92,11 +93,43 @@ public class LessonImportActivity extends AppCompatActivity {
             findViewById(R.id.tNothingFound).setVisibility(View.VISIBLE);
         }
         initListView();
+        scanLessons();
+    }
+
+    @Override
+    protected void onDestroy() {
+        if (lessonScanner != null) {
+            lessonScanner.cancel();
+        }
+        super.onDestroy();
+    }
+
+    /**
+     * Liest die Zusammenfassungen aller Lektionen im Hintergrund und zeigt sie in der Liste an,
+     * sobald sie vorliegen.
+     */
+    private void scanLessons() {
+        if (lessonScanner != null) {
+            lessonScanner.cancel();
+        }
+        if (files == null) return;
+
+        final LessonImportAdapter scannedAdapter = adapter;
+        lessonScanner = new LessonScanner();
+        lessonScanner.scan(files, new LessonScanner.Callback() {
+            @Override
+            public void onLessonScanned(File file, LessonSummary summary) {
+                if (summary != null) {
+                    scannedAdapter.setSummary(file.getName(), summary);
+                }
+            }
+        });
     }
 
     private void initListView() {
         listView = findViewById(R.id.lvLessons);
-        listView.setAdapter(new LessonImportAdapter(context, fileNames));
+        adapter = new LessonImportAdapter(context, fileNames);
+        listView.setAdapter(adapter);
         listView.setChoiceMode(AbsListView.CHOICE_MODE_SINGLE);
         listView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
             @Override
@@ -122,17 +155,19 @@ public class LessonImportActivity extends AppCompatActivity {
             lastSelection = position;
             String text = getString(R.string.next_expire_date);
             try {
-                URI uri = getFilePath((String) listView.getItemAtPosition(position)).toURI();
-                FlashCardXMLPullFeedParser parser = new FlashCardXMLPullFeedParser(uri.toURL());
-                SparseLongArray map = parser.getNextExpireDate();
+                String filename = (String) listView.getItemAtPosition(position);
+                LessonSummary summary = adapter.getSummary(filename);
+                if (summary == null) {
+                    summary = LessonSummary.forFile(getFilePath(filename));
+                }
 
-                if (map.get(0) > Long.MIN_VALUE) {
-                    if (map.get(1, 0) > 0) {
-                        long numberOfCards = map.get(1);
+                if (summary.getNextExpirationTime() > Long.MIN_VALUE) {
+                    int numberOfCards = summary.getNumberOfExpiredCards(System.currentTimeMillis());
+                    if (numberOfCards > 0) {
                         text = getString(R.string.expired_cards).concat(" ")
                                 .concat(String.valueOf(numberOfCards));
                     } else {
-                        long dateL = map.get(0);
+                        long dateL = summary.getNextExpirationTime();
                         Calendar cal = Calendar.getInstance(Locale.getDefault());
                         cal.setTimeInMillis(dateL);
                         String date = DateFormat.format("dd.MM.yyyy HH:mm", cal).toString();
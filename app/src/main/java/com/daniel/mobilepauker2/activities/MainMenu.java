@@ -299,6 +299,7 @@ public class MainMenu extends AppCompatActivity {
     }
 
     public void learnNewCard(View view) {
+        modelManager.startLearningSession();
         if (settingsManager.getBoolPreference(context, HIDE_TIMES)) {
             modelManager.setLearningPhase(context, SIMPLE_LEARNING);
         } else {
@@ -309,6 +310,7 @@ public class MainMenu extends AppCompatActivity {
     }
 
     public void repeatCards(View view) {
+        modelManager.startLearningSession();
         modelManager.setLearningPhase(context, ModelManager.LearningPhase.REPEATING_LTM);
         Intent importActivity = new Intent(context, LearnCardsActivity.class);
         startActivity(importActivity);
@@ -7,8 +7,6 @@ import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Message;
 import android.preference.PreferenceManager;
 import android.support.annotation.Nullable;
 import android.text.Editable;
@@ -24,8 +22,8 @@ import android.widget.Toast;
 import com.daniel.mobilepauker2.PaukerManager;
 import com.daniel.mobilepauker2.R;
 import com.daniel.mobilepauker2.dropbox.SyncDialog;
+import com.daniel.mobilepauker2.model.LessonSaver;
 import com.daniel.mobilepauker2.model.ModelManager;
-import com.daniel.mobilepauker2.model.SaveLessonThreaded;
 import com.daniel.mobilepauker2.model.SettingsManager;
 import com.daniel.mobilepauker2.utils.Constants;
 
@@ -145,24 +143,23 @@ public class SaveDialog extends Activity {
     }
 
     private void saveLesson() {
-        SaveLessonThreaded saveThread = new SaveLessonThreaded(new Handler(new Handler.Callback() {
+        LessonSaver.instance().saveLesson(new LessonSaver.Callback() {
             @Override
-            public boolean handleMessage(Message msg) {
-                boolean result = msg.getData().getBoolean(Constants.MESSAGE_BOOL_KEY);
-                if (result) {
-                    setResult(RESULT_OK);
-                    if (SettingsManager.instance().getBoolPreference(context, SettingsManager.Keys.AUTO_SYNC)) {
-                        uploadCurrentFile();
-                    }
-                } else {
-                    showToast((Activity)context, R.string.saving_error, Toast.LENGTH_SHORT);
-                    setResult(RESULT_CANCELED);
+            public void onSaveComplete() {
+                setResult(RESULT_OK);
+                if (SettingsManager.instance().getBoolPreference(context, SettingsManager.Keys.AUTO_SYNC)) {
+                    uploadCurrentFile();
                 }
                 finish();
-                return result;
             }
-        }));
-        saveThread.run();
+
+            @Override
+            public void onError(Exception e) {
+                showToast((Activity) context, R.string.saving_error, Toast.LENGTH_SHORT);
+                setResult(RESULT_CANCELED);
+                finish();
+            }
+        });
     }
 
     private void uploadCurrentFile() {
@@ -17,8 +17,8 @@ import com.daniel.mobilepauker2.R;
 import com.daniel.mobilepauker2.model.CardAdapter;
 import com.daniel.mobilepauker2.model.FlashCard;
 import com.daniel.mobilepauker2.model.ModelManager;
+import com.daniel.mobilepauker2.model.PackSearch;
 import com.daniel.mobilepauker2.utils.Constants;
-import com.daniel.mobilepauker2.utils.Log;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -39,6 +39,7 @@ public class SearchActivity extends AppCompatActivity {
     private ListView listView;
     private Intent intent;
     private List<FlashCard> pack;
+    private PackSearch packSearch;
 
     @Override
     protected void onCreate(@Nullable Bundle savedInstanceState) {
@@ -49,10 +50,22 @@ public class SearchActivity extends AppCompatActivity {
             setContentView(R.layout.search_cards);
             listView = findViewById(R.id.listView);
             itemPosition = new Vector<>();
+            packSearch = new PackSearch(new PackSearch.Callback() {
+                @Override
+                public void onResults(int[] positions) {
+                    List<FlashCard> results = new ArrayList<>(positions.length);
+                    itemPosition.clear();
+                    for (int position : positions) {
+                        results.add(pack.get(position));
+                        itemPosition.add(position);
+                    }
+                    showResults(results);
+                }
+            });
 
             int stackIndex = intent.getIntExtra(Constants.STACK_INDEX, 0);
             modelManager.setCurrentPack(context, stackIndex);
-            pack = modelManager.getCurrentPack();
+            setPack(modelManager.getCurrentPack());
         } else {
             finish();
         }
@@ -73,12 +86,14 @@ public class SearchActivity extends AppCompatActivity {
 
             @Override
             public boolean onQueryTextChange(String query) {
-                List<FlashCard> results = new ArrayList<>();
-                itemPosition.clear();
-
-                results = queryString(query, results);
-
-                showResults(results);
+                if (query.isEmpty()) {
+                    packSearch.clear();
+                    itemPosition.clear();
+                    showResults(pack);
+                } else {
+                    // Das Ergebnis kommt über den Callback
+                    packSearch.search(query);
+                }
 
                 return true;
             }
@@ -99,10 +114,18 @@ public class SearchActivity extends AppCompatActivity {
         return true;
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (packSearch != null) {
+            packSearch.release();
+        }
+    }
+
     @Override
     protected void onActivityResult(int requestCode, int resultCode, Intent data) {
         if (requestCode == Constants.REQUEST_CODE_EDIT_CARD && resultCode == RESULT_OK) {
-            pack = modelManager.getCurrentPack();
+            setPack(modelManager.getCurrentPack());
             invalidateOptionsMenu();
         }
     }
@@ -122,30 +145,9 @@ public class SearchActivity extends AppCompatActivity {
         });
     }
 
-    private List<FlashCard> queryString(String query, List<FlashCard> results) {
-        if (query.equals("")) {
-            results = pack;
-        } else {
-            FlashCard card;
-            for (int i = 0; i < pack.size(); i++) {
-                card = pack.get(i);
-                Log.d("SearchActivity::ShowResults", "Index - " + card.getId());
-
-                String frontSide = card.getFrontSide().getText().toLowerCase();
-                String backSide = card.getReverseSide().getText().toLowerCase();
-
-                //frontSide = Normalizer.normalize(frontSide, Normalizer.Form.NFD).replaceAll("\\p{InCombiningDiacriticalMarks}+", "");;
-                //backSide = Normalizer.normalize(backSide, Normalizer.Form.NFD).replaceAll("\\p{InCombiningDiacriticalMarks}+", "");;
-                //query = Normalizer.normalize(query, Normalizer.Form.NFD).replaceAll("\\p{InCombiningDiacriticalMarks}+", "");;
-
-                if (frontSide.contains(query.toLowerCase())
-                        || backSide.contains(query.toLowerCase())) {
-                    results.add(card);
-                    itemPosition.add(i);
-                }
-            }
-        }
-        return results;
+    private void setPack(List<FlashCard> pack) {
+        this.pack = pack;
+        packSearch.setPack(pack);
     }
 
     private void editCard(int position) {
@@ -0,0 +1,211 @@
+package com.daniel.mobilepauker2.model;
+
+import com.daniel.mobilepauker2.model.pauker_native.Card;
+import com.daniel.mobilepauker2.model.pauker_native.Lesson;
+import com.daniel.mobilepauker2.model.pauker_native.LongTermBatch;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.SplittableRandom;
+
+/**
+ * Der aktuelle Stapel. Zum Blättern ist er nur eine Ansicht auf die Karten der Lektion oder
+ * eines Stapels, es wird nichts kopiert. Beim Lernen werden Karten zwischen den Stapeln
+ * verschoben, dann bekommt er eine eigene Kopie der Karten. Gemischt wird nur eine Liste der
+ * Positionen und nicht die Karten selbst.
+ * <p>
+ * Karten werden nicht über den Stapel entfernt, sondern aus der Lektion. Danach muss
+ * {@link #cardRemoved(int)} aufgerufen werden.
+ */
+public class CardPack extends AbstractList<FlashCard> implements RandomAccess {
+    // Alle Karten der Lektion, wenn nicht null
+    private final Lesson lesson;
+    // Sonst die Karten eines Stapels oder eine eigene Kopie
+    private final List<Card> cards;
+    private final boolean ownsCards;
+    // Die Positionen in der Lektion oder in cards in der Reihenfolge des Stapels, null wenn
+    // nicht gemischt wurde
+    private int[] order = null;
+    private int orderSize = 0;
+    // Die Positionen vor drawnSize sind schon ausgelost, dahinter liegen die übrigen ungeordnet
+    private int drawnSize = 0;
+    private SplittableRandom random = null;
+
+    private CardPack(Lesson lesson, List<Card> cards, boolean ownsCards) {
+        this.lesson = lesson;
+        this.cards = cards;
+        this.ownsCards = ownsCards;
+    }
+
+    /**
+     * @return Ein leerer Stapel
+     */
+    public static CardPack empty() {
+        return new CardPack(null, Collections.<Card>emptyList(), false);
+    }
+
+    /**
+     * @param lesson Die Lektion
+     * @return Eine Ansicht auf alle Karten der Lektion: die ungelernten Karten gefolgt von den
+     * Karten der Langzeitstapel
+     */
+    public static CardPack viewOf(Lesson lesson) {
+        return new CardPack(lesson, null, false);
+    }
+
+    /**
+     * @param cards Die Karten eines Stapels
+     * @return Eine Ansicht auf die Karten
+     */
+    public static CardPack viewOf(List<Card> cards) {
+        return new CardPack(null, cards, false);
+    }
+
+    /**
+     * @param cards Die Karten
+     * @return Ein Stapel mit einer eigenen Kopie der Karten, der sich nicht ändert, wenn Karten
+     * zwischen den Stapeln der Lektion verschoben werden
+     */
+    public static CardPack copyOf(Collection<Card> cards) {
+        return new CardPack(null, new ArrayList<>(cards), true);
+    }
+
+    @Override
+    public int size() {
+        return order == null ? getSourceSize() : orderSize;
+    }
+
+    @Override
+    public FlashCard get(int position) {
+        if (order == null) {
+            return (FlashCard) getSourceCard(position);
+        }
+        if (position < 0 || position >= orderSize) {
+            throw new IndexOutOfBoundsException("Position: " + position + ", Size: " + orderSize);
+        }
+        if (position >= drawnSize) {
+            draw(position);
+        }
+        return (FlashCard) getSourceCard(order[position]);
+    }
+
+    /**
+     * Mischt den Stapel. Es wird nichts umsortiert, die Positionen werden erst beim Lesen
+     * ausgelost. Bei gleichem Zufallsgenerator ergibt sich immer dieselbe Reihenfolge.
+     * @param random Der Zufallsgenerator, der Stapel bekommt davon einen eigenen abgespaltenen
+     */
+    public void shuffle(SplittableRandom random) {
+        if (order == null) {
+            orderSize = getSourceSize();
+            order = new int[orderSize];
+            for (int i = 0; i < orderSize; i++) {
+                order[i] = i;
+            }
+        }
+        // Abgespalten, damit die Reihenfolge nicht davon abhängt, wann gelesen wird
+        this.random = random.split();
+        drawnSize = 0;
+        modCount++;
+    }
+
+    /**
+     * Lost die Positionen bis einschließlich position aus (Fisher-Yates von vorne).
+     */
+    private void draw(int position) {
+        for (int i = drawnSize; i <= position; i++) {
+            int j = i + random.nextInt(orderSize - i);
+            int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+        }
+        drawnSize = position + 1;
+    }
+
+    /**
+     * Legt weitere Karten hinten auf einen Stapel mit eigener Kopie. Ist der Stapel gemischt,
+     * werden sie unter die noch nicht ausgelosten Positionen gemischt.
+     * @param newCards Die neuen Karten
+     */
+    public void addCards(Collection<Card> newCards) {
+        if (!ownsCards) {
+            throw new UnsupportedOperationException("Only a pack with its own copy of the cards can grow");
+        }
+        if (order != null) {
+            if (orderSize + newCards.size() > order.length) {
+                order = Arrays.copyOf(order, Math.max(orderSize + newCards.size(),
+                        order.length + (order.length >> 1)));
+            }
+            for (int i = 0; i < newCards.size(); i++) {
+                order[orderSize++] = cards.size() + i;
+            }
+        }
+        cards.addAll(newCards);
+        modCount++;
+    }
+
+    /**
+     * Nimmt eine Karte aus dem Stapel, nachdem sie aus der Lektion entfernt wurde.
+     * @param position Die Position der Karte im Stapel
+     */
+    public void cardRemoved(int position) {
+        int sourceIndex = position;
+        if (order != null) {
+            if (position >= drawnSize) {
+                draw(position);
+            }
+            sourceIndex = order[position];
+            System.arraycopy(order, position + 1, order, position, orderSize - position - 1);
+            orderSize--;
+            drawnSize--;
+            // In der Quelle rücken alle folgenden Karten eine Position nach vorne
+            for (int i = 0; i < orderSize; i++) {
+                if (order[i] > sourceIndex) {
+                    order[i]--;
+                }
+            }
+        }
+        // Eine Ansicht sieht die Änderung der Lektion von selbst
+        if (ownsCards) {
+            cards.remove(sourceIndex);
+        }
+        modCount++;
+    }
+
+    private int getSourceSize() {
+        if (lesson == null) {
+            return cards.size();
+        }
+        int size = lesson.getUnlearnedBatch().getNumberOfCards();
+        for (LongTermBatch longTermBatch : lesson.getLongTermBatches()) {
+            size += longTermBatch.getNumberOfCards();
+        }
+        return size;
+    }
+
+    private Card getSourceCard(int index) {
+        if (lesson == null) {
+            return cards.get(index);
+        }
+        if (index >= 0) {
+            int batchIndex = index;
+            int numberOfCards = lesson.getUnlearnedBatch().getNumberOfCards();
+            if (batchIndex < numberOfCards) {
+                return lesson.getUnlearnedBatch().getCard(batchIndex);
+            }
+            batchIndex -= numberOfCards;
+            for (LongTermBatch longTermBatch : lesson.getLongTermBatches()) {
+                numberOfCards = longTermBatch.getNumberOfCards();
+                if (batchIndex < numberOfCards) {
+                    return longTermBatch.getCard(batchIndex);
+                }
+                batchIndex -= numberOfCards;
+            }
+        }
+        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + getSourceSize());
+    }
+}
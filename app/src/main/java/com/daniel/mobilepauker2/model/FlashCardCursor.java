@@ -23,6 +23,8 @@ import android.database.CursorIndexOutOfBoundsException;
 
 import com.daniel.mobilepauker2.utils.Log;
 
+import java.util.List;
+
 public class FlashCardCursor extends AbstractCursor {
     private final ModelManager modelManager = ModelManager.instance();
 
@@ -63,47 +65,22 @@ public class FlashCardCursor extends AbstractCursor {
 
 
     /**
-     * Gets value at the given column for the current row.
+     * Gets the card of the current row straight from the current pack.
      */
-    private String get(int column) {
+    private FlashCard getCurrentCard(int column) {
         if (column < 0 || column >= columnCount) {
             throw new CursorIndexOutOfBoundsException("Requested column: "
                     + column + ", # of columns: " + columnCount);
         }
-        if (getPosition() < 0) {
+        int position = getPosition();
+        List<FlashCard> pack = modelManager.getCurrentPack();
+        if (position < 0) {
             throw new CursorIndexOutOfBoundsException("Before first row.");
         }
-        if (getPosition() >= modelManager.getCurrentBatchSize()) {
+        if (position >= pack.size()) {
             throw new CursorIndexOutOfBoundsException("After last row.");
         }
-
-        FlashCard flashCard = modelManager.getCard(getPosition());
-
-        switch (column) {
-            case (CardPackAdapter.KEY_SIDEA_ID): {
-                return flashCard == null ? "" : flashCard.getSideAText();
-            }
-            case (CardPackAdapter.KEY_SIDEB_ID): {
-                return flashCard == null ? "" : flashCard.getSideBText();
-            }
-            case (CardPackAdapter.KEY_ROWID_ID): {
-                //return flashCard.getId();
-
-                //********************* -- Is this ok - using the position of the cursor to id the flash card!
-                return Integer.toString(getPosition());
-            }
-            case (CardPackAdapter.KEY_LEARN_STATUS_ID): {
-                if (flashCard != null && flashCard.isLearned()) {
-                    return "true";
-                } else {
-                    return "false";
-                }
-            }
-            case (CardPackAdapter.KEY_INDEX_ID): {
-                return flashCard == null ? null : flashCard.getIndex();
-            }
-        }
-        return null;
+        return pack.get(position);
     }
 
     @Override
@@ -116,51 +93,87 @@ public class FlashCardCursor extends AbstractCursor {
         return columnNames;
     }
 
+    @Override
+    public int getType(int column) {
+        switch (column) {
+            case CardPackAdapter.KEY_ROWID_ID:
+            case CardPackAdapter.KEY_LEARN_STATUS_ID:
+                return FIELD_TYPE_INTEGER;
+            default:
+                return isNull(column) ? FIELD_TYPE_NULL : FIELD_TYPE_STRING;
+        }
+    }
+
     @Override
     public String getString(int column) {
-        Object value = get(column);
-        if (value == null) return null;
-        return value.toString();
+        FlashCard flashCard = getCurrentCard(column);
+        switch (column) {
+            case CardPackAdapter.KEY_SIDEA_ID:
+                return flashCard.getSideAText();
+            case CardPackAdapter.KEY_SIDEB_ID:
+                return flashCard.getSideBText();
+            case CardPackAdapter.KEY_ROWID_ID:
+                return Long.toString(flashCard.getId());
+            case CardPackAdapter.KEY_LEARN_STATUS_ID:
+                return flashCard.isLearned() ? "true" : "false";
+            case CardPackAdapter.KEY_INDEX_ID:
+                return flashCard.getIndex();
+        }
+        return null;
     }
 
     @Override
     public short getShort(int column) {
-        Object value = get(column);
-        if (value == null) return 0;
-        return Short.parseShort(value.toString());
+        return (short) getLong(column);
     }
 
     @Override
     public int getInt(int column) {
-        Object value = get(column);
-        if (value == null) return 0;
-        return Integer.parseInt(value.toString());
+        return (int) getLong(column);
     }
 
     @Override
     public long getLong(int column) {
-        Object value = get(column);
-        if (value == null) return 0;
-        return Long.parseLong(value.toString());
+        FlashCard flashCard = getCurrentCard(column);
+        switch (column) {
+            case CardPackAdapter.KEY_ROWID_ID:
+                return flashCard.getId();
+            case CardPackAdapter.KEY_LEARN_STATUS_ID:
+                return flashCard.isLearned() ? 1 : 0;
+            default:
+                // text columns are converted like before
+                String value = getString(column);
+                return value == null ? 0 : Long.parseLong(value);
+        }
     }
 
     @Override
     public float getFloat(int column) {
-        Object value = get(column);
-        if (value == null) return 0.0f;
-        return Float.parseFloat(value.toString());
+        return (float) getDouble(column);
     }
 
     @Override
     public double getDouble(int column) {
-        Object value = get(column);
-        if (value == null) return 0.0d;
-        return Double.parseDouble(value.toString());
+        switch (column) {
+            case CardPackAdapter.KEY_ROWID_ID:
+            case CardPackAdapter.KEY_LEARN_STATUS_ID:
+                return getLong(column);
+            default:
+                String value = getString(column);
+                return value == null ? 0.0d : Double.parseDouble(value);
+        }
     }
 
     @Override
     public boolean isNull(int column) {
-        return get(column) == null;
+        switch (column) {
+            case CardPackAdapter.KEY_ROWID_ID:
+            case CardPackAdapter.KEY_LEARN_STATUS_ID:
+                getCurrentCard(column);
+                return false;
+            default:
+                return getString(column) == null;
+        }
     }
 
     public boolean requery() {
@@ -9,7 +9,12 @@ import android.view.ViewGroup;
 import android.widget.ArrayAdapter;
 import android.widget.TextView;
 
+import com.daniel.mobilepauker2.R;
+import com.daniel.mobilepauker2.model.xmlsupport.LessonSummary;
+
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Created by Daniel on 05.03.2018.
@@ -21,12 +26,33 @@ import java.util.ArrayList;
 
 public class LessonImportAdapter extends ArrayAdapter<String> {
     private final ArrayList<String> data;
+    private final Map<String, LessonSummary> summaries = new HashMap<>();
 
     public LessonImportAdapter(@NonNull Context context, ArrayList<String> data) {
-        super(context, android.R.layout.simple_list_item_1, data);
+        super(context, android.R.layout.simple_list_item_2, android.R.id.text1, data);
         this.data = data;
     }
 
+    /**
+     * Setzt die Zusammenfassung einer Lektion und aktualisiert die Liste.
+     * @param fileName Dateiname der Lektion
+     * @param summary  Zusammenfassung der Lektion
+     */
+    public void setSummary(String fileName, LessonSummary summary) {
+        summaries.put(fileName, summary);
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Gibt die Zusammenfassung einer Lektion zurück.
+     * @param fileName Dateiname der Lektion
+     * @return Die Zusammenfassung oder <b>null</b>, wenn sie noch nicht eingelesen wurde
+     */
+    @Nullable
+    public LessonSummary getSummary(String fileName) {
+        return summaries.get(fileName);
+    }
+
     @NonNull
     @Override
     public View getView(int position, @Nullable View convertView, @NonNull ViewGroup parent) {
@@ -40,6 +66,16 @@ public class LessonImportAdapter extends ArrayAdapter<String> {
         TextView tv = view.findViewById(android.R.id.text1);
         String name = data.get(position);
 
+        TextView summaryView = view.findViewById(android.R.id.text2);
+        LessonSummary summary = summaries.get(name);
+        if (summary != null) {
+            summaryView.setText(getContext().getString(R.string.lesson_summary, summary.getNumberOfCards(),
+                    summary.getNumberOfExpiredCards(System.currentTimeMillis())));
+            summaryView.setVisibility(View.VISIBLE);
+        } else {
+            summaryView.setVisibility(View.GONE);
+        }
+
         int index = name.endsWith(".xml.gz") ? name.indexOf(".xml") : name.indexOf(".pau");
         if (index != -1) {
             name = name.substring(0, index);
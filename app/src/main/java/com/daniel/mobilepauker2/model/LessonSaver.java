@@ -0,0 +1,202 @@
+package com.daniel.mobilepauker2.model;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.daniel.mobilepauker2.model.pauker_native.Lesson;
+import com.daniel.mobilepauker2.model.pauker_native.LessonSnapshot;
+import com.daniel.mobilepauker2.model.xmlsupport.FlashCardBinaryCache;
+import com.daniel.mobilepauker2.model.xmlsupport.FlashCardXMLStreamWriter;
+import com.daniel.mobilepauker2.model.xmlsupport.LessonJournal;
+import com.daniel.mobilepauker2.model.xmlsupport.LessonSummary;
+import com.daniel.mobilepauker2.utils.Log;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Speichert die aktuelle Lektion im Hintergrund. Beim Aufruf wird nur ein Schnappschuss der
+ * Lektion erstellt, die Kopie der Karten wird in einem eigenen Thread erstellt, geschrieben und
+ * komprimiert. Wartet noch ein Auftrag
+ * für dieselbe Datei, wird er mit dem neuen zusammengefasst und nur einmal geschrieben.
+ * Mit der Kopie beginnt ein neues Journal, das nach dem Schreiben das alte ersetzt.
+ */
+public class LessonSaver {
+    private static LessonSaver instance = null;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private SaveRequest pendingRequest = null;
+
+    private LessonSaver() {
+    }
+
+    public static LessonSaver instance() {
+        if (instance == null) {
+            instance = new LessonSaver();
+        }
+        return instance;
+    }
+
+    /**
+     * Speichert die aktuelle Lektion. Muss im Mainthread aufgerufen werden.
+     * @param callback Wird im Mainthread aufgerufen, sobald die Lektion gespeichert wurde
+     */
+    public void saveLesson(final Callback callback) {
+        ModelManager modelManager = ModelManager.instance();
+        if (!modelManager.isLessonNotNew()) {
+            postComplete(callback);
+            return;
+        }
+
+        LessonSnapshot snapshot = modelManager.getLesson().snapshot();
+        File file = modelManager.getFilePath();
+        LessonJournal journal = modelManager.getJournal();
+        synchronized (this) {
+            if (pendingRequest != null && pendingRequest.file.equals(file)) {
+                Log.d("LessonSaver::saveLesson", "Coalescing with pending save");
+                // Der Auftrag hat noch nicht begonnen, nur seine Kompaktierung wird ersetzt
+                pendingRequest.journal.abortCompaction(pendingRequest.compaction);
+                pendingRequest.snapshot = snapshot;
+                pendingRequest.journal = journal;
+                pendingRequest.compaction = journal.beginCompaction(snapshot.getCards());
+                pendingRequest.callbacks.add(callback);
+                return;
+            }
+
+            // Jeder Auftrag, der geschrieben wird, behält seine eigene Kompaktierung
+            LessonJournal.Compaction compaction = journal.beginCompaction(snapshot.getCards());
+            final SaveRequest request = new SaveRequest(file, snapshot, journal, compaction, callback);
+            pendingRequest = request;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    write(request);
+                }
+            });
+        }
+    }
+
+    /**
+     * Schreibt den Cache und die Zusammenfassung einer gerade eingelesenen Lektionsdatei. Wie
+     * beim Speichern wird dafür nur ein Schnappschuss erstellt, geschrieben wird in dem Thread
+     * der Speicheraufträge und damit vor allen späteren Aufträgen.
+     * @param file     Die Lektionsdatei
+     * @param snapshot Die Lektion, wie sie in der Datei steht
+     */
+    public void writeCaches(final File file, final LessonSnapshot snapshot) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                // Die Datei kann inzwischen gelöscht worden sein
+                if (!file.isFile()) {
+                    return;
+                }
+                try {
+                    Lesson lesson = snapshot.toLesson();
+                    FlashCardBinaryCache.write(file, lesson);
+                    LessonSummary.write(file, lesson);
+                } catch (RuntimeException e) {
+                    Log.w("LessonSaver::writeCaches", "Cache not written: " + e.getMessage());
+                }
+            }
+        });
+    }
+
+    private void write(SaveRequest request) {
+        LessonSnapshot snapshot;
+        LessonJournal journal;
+        LessonJournal.Compaction compaction;
+        List<Callback> callbacks;
+        synchronized (this) {
+            // Ab hier werden keine Aufträge mehr mit diesem zusammengefasst
+            if (pendingRequest == request) {
+                pendingRequest = null;
+            }
+            snapshot = request.snapshot;
+            journal = request.journal;
+            compaction = request.compaction;
+            callbacks = request.callbacks;
+        }
+
+        try {
+            FlashCardXMLStreamWriter.saveLesson(snapshot.toLesson(), request.file);
+            postCompactionFinished(journal, compaction);
+            for (Callback callback : callbacks) {
+                postComplete(callback);
+            }
+        } catch (Throwable e) {
+            // auch Errors (z.B. kein Speicher mehr für die Kopie) müssen gemeldet werden
+            Log.e("LessonSaver::write", "Saving failed", e);
+            postCompactionAborted(journal, compaction);
+            Exception exception = e instanceof Exception ? (Exception) e : new RuntimeException(e);
+            for (Callback callback : callbacks) {
+                postError(callback, exception);
+            }
+        }
+    }
+
+    private void postCompactionFinished(final LessonJournal journal,
+                                        final LessonJournal.Compaction compaction) {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                journal.finishCompaction(compaction);
+            }
+        });
+    }
+
+    private void postCompactionAborted(final LessonJournal journal,
+                                       final LessonJournal.Compaction compaction) {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                journal.abortCompaction(compaction);
+            }
+        });
+    }
+
+    private void postComplete(final Callback callback) {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                callback.onSaveComplete();
+            }
+        });
+    }
+
+    private void postError(final Callback callback, final Exception e) {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                callback.onError(e);
+            }
+        });
+    }
+
+    public interface Callback {
+        void onSaveComplete();
+
+        void onError(Exception e);
+    }
+
+    private static class SaveRequest {
+        private final File file;
+        private final List<Callback> callbacks = new ArrayList<>();
+        private LessonSnapshot snapshot;
+        private LessonJournal journal;
+        private LessonJournal.Compaction compaction;
+
+        SaveRequest(File file, LessonSnapshot snapshot, LessonJournal journal,
+                    LessonJournal.Compaction compaction, Callback callback) {
+            this.file = file;
+            this.snapshot = snapshot;
+            this.journal = journal;
+            this.compaction = compaction;
+            callbacks.add(callback);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.daniel.mobilepauker2.model;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.daniel.mobilepauker2.model.xmlsupport.LessonSummary;
+import com.daniel.mobilepauker2.utils.Log;
+
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Liest die Zusammenfassungen mehrerer Lektionen im Hintergrund. Jedes Ergebnis wird sofort
+ * im Mainthread an den Callback übergeben.
+ */
+public class LessonScanner {
+    private static final int MAX_THREADS = 4;
+
+    private final ExecutorService executor;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private volatile boolean cancelled = false;
+
+    public LessonScanner() {
+        int threads = Math.min(Runtime.getRuntime().availableProcessors(), MAX_THREADS);
+        executor = Executors.newFixedThreadPool(Math.max(threads, 1));
+    }
+
+    /**
+     * Startet das Einlesen der Zusammenfassungen.
+     * @param files    Lektionsdateien
+     * @param callback Empfängt die Ergebnisse im Mainthread
+     */
+    public void scan(File[] files, final Callback callback) {
+        for (final File file : files) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (cancelled) return;
+
+                    LessonSummary summary;
+                    try {
+                        summary = LessonSummary.forFile(file);
+                    } catch (Exception e) {
+                        Log.w("LessonScanner::scan", "Unable to read " + file.getName());
+                        summary = null;
+                    }
+                    post(callback, file, summary);
+                }
+            });
+        }
+    }
+
+    /**
+     * Bricht das Einlesen ab. Danach werden keine Ergebnisse mehr übergeben.
+     */
+    public void cancel() {
+        cancelled = true;
+        executor.shutdownNow();
+        handler.removeCallbacksAndMessages(null);
+    }
+
+    private void post(final Callback callback, final File file, final LessonSummary summary) {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!cancelled) {
+                    callback.onLessonScanned(file, summary);
+                }
+            }
+        });
+    }
+
+    public interface Callback {
+        /**
+         * Wird im Mainthread aufgerufen, sobald eine Lektion eingelesen wurde.
+         * @param file    Die Lektionsdatei
+         * @param summary Die Zusammenfassung oder <b>null</b>, wenn die Datei nicht gelesen
+         *                werden konnte
+         */
+        void onLessonScanned(File file, LessonSummary summary);
+    }
+}
@@ -0,0 +1,139 @@
+package com.daniel.mobilepauker2.model;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.daniel.mobilepauker2.model.pauker_native.Card;
+import com.daniel.mobilepauker2.model.pauker_native.CardSearchIndex;
+import com.daniel.mobilepauker2.model.pauker_native.Lesson;
+import com.daniel.mobilepauker2.utils.Log;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Hält den Suchindex der aktuellen Lektion. Der Index wird nach dem Laden im Hintergrund
+ * aufgebaut und danach bei jeder Änderung einer Karte aktualisiert. Alle Methoden müssen im
+ * Mainthread aufgerufen werden.
+ */
+public class LessonSearch {
+    private static LessonSearch instance = null;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private CardSearchIndex index = null;
+    // Karten, die während des Aufbaus geändert wurden. Null bedeutet gelöscht.
+    private final Map<Card, Boolean> changedCards = new IdentityHashMap<>();
+    private volatile int generation = 0;
+
+    private LessonSearch() {
+    }
+
+    public static LessonSearch instance() {
+        if (instance == null) {
+            instance = new LessonSearch();
+        }
+        return instance;
+    }
+
+    /**
+     * Baut den Index für eine neue Lektion im Hintergrund auf. Bis er fertig ist, liefert
+     * {@link #search(String, Card.Element)} kein Ergebnis.
+     * @param lesson Die neue Lektion
+     */
+    public void setLesson(Lesson lesson) {
+        final int buildGeneration = ++generation;
+        index = null;
+        changedCards.clear();
+
+        // Die Texte werden im Mainthread eingesammelt, damit der Hintergrund keine Karten liest
+        List<Card> cards = lesson.getCards();
+        cards.addAll(lesson.getUltraShortTermList());
+        cards.addAll(lesson.getShortTermList());
+        final long[] ids = new long[cards.size()];
+        final String[] frontTexts = new String[cards.size()];
+        final String[] reverseTexts = new String[cards.size()];
+        for (int i = 0; i < cards.size(); i++) {
+            Card card = cards.get(i);
+            ids[i] = card.getId();
+            frontTexts[i] = card.getFrontSide().getText();
+            reverseTexts[i] = card.getReverseSide().getText();
+        }
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                long start = System.currentTimeMillis();
+                final CardSearchIndex newIndex = new CardSearchIndex();
+                for (int i = 0; i < ids.length; i++) {
+                    if (generation != buildGeneration) return;
+                    newIndex.addCard(ids[i], frontTexts[i], reverseTexts[i]);
+                }
+                Log.d("LessonSearch::setLesson", "Index built in "
+                        + (System.currentTimeMillis() - start) + " ms");
+
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        install(buildGeneration, newIndex);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Nimmt eine neue oder geänderte Karte in den Index auf.
+     * @param card Die Karte
+     */
+    public void cardChanged(Card card) {
+        if (index != null) {
+            index.updateCard(card);
+        } else {
+            changedCards.put(card, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Entfernt eine gelöschte Karte aus dem Index.
+     * @param card Die Karte
+     */
+    public void cardRemoved(Card card) {
+        if (index != null) {
+            index.removeCard(card.getId());
+        } else {
+            changedCards.put(card, null);
+        }
+    }
+
+    /**
+     * Sucht nach Karten, die einen Text enthalten. Groß- und Kleinschreibung sowie Akzente
+     * werden nicht beachtet.
+     * @param pattern  Der gesuchte Text
+     * @param cardSide Die Seite, die durchsucht wird
+     * @return Die Ids der passenden Karten in aufsteigender Reihenfolge oder <b>null</b>, wenn
+     * der Index noch nicht fertig oder der Text zu kurz ist. Dann müssen die Karten selbst
+     * durchsucht werden.
+     */
+    public long[] search(String pattern, Card.Element cardSide) {
+        return index == null ? null : index.search(pattern, cardSide);
+    }
+
+    private void install(int buildGeneration, CardSearchIndex newIndex) {
+        if (buildGeneration != generation) {
+            return;
+        }
+        for (Map.Entry<Card, Boolean> change : changedCards.entrySet()) {
+            if (change.getValue() == null) {
+                newIndex.removeCard(change.getKey().getId());
+            } else {
+                newIndex.updateCard(change.getKey());
+            }
+        }
+        changedCards.clear();
+        index = newIndex;
+    }
+}
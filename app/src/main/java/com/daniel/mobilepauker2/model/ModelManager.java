@@ -27,17 +27,21 @@ import android.os.Environment;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.text.format.DateFormat;
-import android.util.SparseLongArray;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import com.daniel.mobilepauker2.PaukerManager;
 import com.daniel.mobilepauker2.R;
+import com.daniel.mobilepauker2.model.pauker_native.Batch;
 import com.daniel.mobilepauker2.model.pauker_native.Card;
 import com.daniel.mobilepauker2.model.pauker_native.Font;
 import com.daniel.mobilepauker2.model.pauker_native.Lesson;
 import com.daniel.mobilepauker2.model.pauker_native.LongTermBatch;
-import com.daniel.mobilepauker2.model.xmlsupport.FlashCardXMLPullFeedParser;
+import com.daniel.mobilepauker2.model.pauker_native.ReviewPlanner;
+import com.daniel.mobilepauker2.model.xmlsupport.FlashCardBinaryCache;
+import com.daniel.mobilepauker2.model.xmlsupport.FlashCardXMLStreamWriter;
+import com.daniel.mobilepauker2.model.xmlsupport.LessonJournal;
+import com.daniel.mobilepauker2.model.xmlsupport.LessonSummary;
 import com.daniel.mobilepauker2.statistics.BatchStatistics;
 import com.daniel.mobilepauker2.utils.Constants;
 import com.daniel.mobilepauker2.utils.Log;
@@ -49,22 +53,21 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.MalformedURLException;
-import java.net.URI;
 import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Random;
+import java.util.SplittableRandom;
 
 import static android.content.Context.MODE_APPEND;
 import static android.content.Context.MODE_PRIVATE;
 import static com.daniel.mobilepauker2.model.SettingsManager.Keys.ENABLE_EXPIRE_TOAST;
 import static com.daniel.mobilepauker2.model.SettingsManager.Keys.LEARN_NEW_CARDS_RANDOMLY;
+import static com.daniel.mobilepauker2.model.SettingsManager.Keys.REPEAT_CARDS;
 import static com.daniel.mobilepauker2.model.SettingsManager.Keys.RETURN_FORGOTTEN_CARDS;
+import static com.daniel.mobilepauker2.model.SettingsManager.Keys.REVIEW_LIMIT;
 
 /**
  * Manages access to a lesson
@@ -81,12 +84,20 @@ import static com.daniel.mobilepauker2.model.SettingsManager.Keys.RETURN_FORGOTT
 public class ModelManager {
     private static ModelManager instance;
     private static final PaukerManager paukerManager = PaukerManager.instance();
+    // So viele abgelaufene Karten werden auf einmal in den Stapel gelegt
+    private static final int REVIEW_PAGE_SIZE = 50;
 
-    private final List<FlashCard> mCurrentPack = new ArrayList<>();
+    private CardPack mCurrentPack = CardPack.empty();
     private final SettingsManager settingsManager = SettingsManager.instance();
     private Lesson mLesson = null;
+    private LessonJournal mJournal = null;
     private FlashCard mCurrentCard = new FlashCard();
     private LearningPhase mLearningPhase = LearningPhase.NOTHING;
+    // Alle Zufallsentscheidungen einer Lernsitzung kommen aus diesem Generator
+    private long mSessionSeed = System.nanoTime();
+    private SplittableRandom mSessionRandom = new SplittableRandom(mSessionSeed);
+    // Plant die abgelaufenen Karten, während sie wiederholt werden
+    private ReviewPlanner mReviewPlanner = null;
 
     private ModelManager() {
 
@@ -146,33 +157,28 @@ public class ModelManager {
 
     private void setupCurrentPack(Context context) {
 
-        Iterator<Card> cardIterator = null;
-
         if (mLesson != null) {
             switch (mLearningPhase) {
 
                 case NOTHING: {
-                    mCurrentPack.clear();
-                    cardIterator = mLesson.getCards().iterator();
+                    // Nur zum Blättern, daher genügt eine Ansicht
+                    mCurrentPack = CardPack.viewOf(mLesson);
                     break;
                 }
 
                 case BROWSE_NEW: {
-                    mCurrentPack.clear();
-                    cardIterator = mLesson.getUnlearnedBatch().getCards().iterator();
+                    mCurrentPack = CardPack.viewOf(mLesson.getUnlearnedBatch().getCards());
                     break;
                 }
 
                 case SIMPLE_LEARNING: {
-                    mCurrentPack.clear();
-                    cardIterator = mLesson.getUnlearnedBatch().getCards().iterator();
+                    mCurrentPack = CardPack.copyOf(mLesson.getUnlearnedBatch().getCards());
                     break;
                 }
 
                 case FILLING_USTM: {
                     Log.d("AndyPaukerApplication::setupCurrentPack", "Setting batch to UnlearnedBatch");
-                    mCurrentPack.clear();
-                    cardIterator = mLesson.getUnlearnedBatch().getCards().iterator();
+                    mCurrentPack = CardPack.copyOf(mLesson.getUnlearnedBatch().getCards());
                     break;
                 }
 
@@ -183,77 +189,66 @@ public class ModelManager {
 
                 case REPEATING_USTM: {
                     Log.d("AndyPaukerApplication::setupCurrentPack", "Setting pack as ultra short term memory");
-                    mCurrentPack.clear();
-                    cardIterator = mLesson.getUltraShortTermList().listIterator();
+                    mCurrentPack = CardPack.copyOf(mLesson.getUltraShortTermList());
                     break;
                 }
 
                 case WAITING_FOR_STM: {
-                    //noinspection UnusedAssignment
-                    cardIterator = mLesson.getShortTermList().listIterator(); // Need to put something in the iterator for requery
                     return;
                 }
 
                 case REPEATING_STM: {
                     Log.d("AndyPaukerApplication::setupCurrentPack", "Setting pack as short term memory");
-                    mCurrentPack.clear();
-                    cardIterator = mLesson.getShortTermList().listIterator();
+                    mCurrentPack = CardPack.copyOf(mLesson.getShortTermList());
                     break;
                 }
 
                 case REPEATING_LTM: {
                     Log.d("AndyPaukerApplication::setupCurrentPack", "Setting pack as expired cards");
-                    mLesson.refreshExpiration();
-                    mCurrentPack.clear();
-                    cardIterator = mLesson.getExpiredCards().iterator();
+                    // Die Karten werden seitenweise geplant, siehe planReviews
+                    mReviewPlanner = new ReviewPlanner(mLesson, getReviewOrder(context),
+                            getReviewLimit(context), mSessionRandom);
+                    mCurrentPack = CardPack.copyOf(mReviewPlanner.nextCards(REVIEW_PAGE_SIZE));
                     break;
                 }
             }
 
-            // Fill the current pack
-            fillCurrentPack(context, cardIterator);
+            if (isShuffle(context)) {
+                shuffleCurrentPack();
+            }
         }
     }
 
     public void setCurrentPack(Context context, int stackIndex) {
-        Iterator<Card> cardIterator;
         if (getLessonSize() > 0) {
-            mCurrentPack.clear();
             switch (stackIndex) {
                 case 0:
-                    cardIterator = mLesson.getCards().iterator();
+                    mCurrentPack = CardPack.viewOf(mLesson);
                     break;
                 case 1:
-                    cardIterator = mLesson.getUnlearnedBatch().getCards().iterator();
+                    mCurrentPack = CardPack.viewOf(mLesson.getUnlearnedBatch().getCards());
                     break;
                 default:
-                    cardIterator = mLesson.getLongTermBatch(stackIndex - 2).getCards().iterator();
+                    mCurrentPack = CardPack.viewOf(mLesson.getLongTermBatch(stackIndex - 2).getCards());
             }
 
-            // Fill the current pack
-            fillCurrentPack(context, cardIterator);
-        }
-    }
-
-    private void fillCurrentPack(Context context, Iterator<Card> cardIterator) {
-        while (cardIterator.hasNext()) {
-            mCurrentPack.add((FlashCard) cardIterator.next());
-        }
-
-        if (isShuffle(context)) {
-            shuffleCurrentPack();
+            if (isShuffle(context)) {
+                shuffleCurrentPack();
+            }
         }
     }
 
     void addCard(String sideA, String sideB, String index, String learnStatus) {
         FlashCard newCard = new FlashCard(sideA, sideB, index, learnStatus);
-        mLesson.getUnlearnedBatch().addCard(newCard);
+        mLesson.addCard(newCard);
+        LessonSearch.instance().cardChanged(newCard);
     }
 
     public void addCard(FlashCard flashCard, String sideA, String sideB) {
         flashCard.setSideAText(sideA);
         flashCard.setSideBText(sideB);
-        mLesson.getUnlearnedBatch().addCard(flashCard);
+        mLesson.addCard(flashCard);
+        LessonSearch.instance().cardChanged(flashCard);
     }
 
     public List<BatchStatistics> getBatchStatistics() {
@@ -283,6 +278,7 @@ public class ModelManager {
 
         mCurrentPack.get(position).setSideAText(sideAText);
         mCurrentPack.get(position).setSideBText(sideBText);
+        LessonSearch.instance().cardChanged(mCurrentPack.get(position));
     }
 
     /**
@@ -299,6 +295,7 @@ public class ModelManager {
         mCurrentCard = mCurrentPack.get(position);
 
         pushCurrentCard();
+        planReviews(position);
     }
 
     /**
@@ -331,24 +328,7 @@ public class ModelManager {
                     Log.e("AndyPaukerApplication::setCurretnCardUnlearned", "Unable to delete card from USTM");
                 }
 
-                switch (settingsManager.getStringPreference(context, RETURN_FORGOTTEN_CARDS)) {
-                    case "1":
-                        mLesson.getUnlearnedBatch().addCard(mCurrentCard);
-                        break;
-                    case "2":
-                        int numberOfCards = mLesson.getUnlearnedBatch().getNumberOfCards();
-                        if (numberOfCards > 0) {
-                            Random random = new Random();
-                            int index = random.nextInt(numberOfCards);
-                            mLesson.getUnlearnedBatch().addCard(index, mCurrentCard);
-                        } else {
-                            mLesson.getUnlearnedBatch().addCard(0, mCurrentCard);
-                        }
-                        break;
-                    default:
-                        mLesson.getUnlearnedBatch().addCard(0, mCurrentCard);
-                        break;
-                }
+                recordCardMoved(LessonJournal.UNLEARNED_BATCH, returnForgottenCard(context));
 
                 break;
 
@@ -356,24 +336,7 @@ public class ModelManager {
                 mCurrentCard.setLearned(false);
                 mLesson.getShortTermList().remove(mCurrentCard);
 
-                switch (settingsManager.getStringPreference(context, RETURN_FORGOTTEN_CARDS)) {
-                    case "1":
-                        mLesson.getUnlearnedBatch().addCard(mCurrentCard);
-                        break;
-                    case "2":
-                        int numberOfCards = mLesson.getUnlearnedBatch().getNumberOfCards();
-                        if (numberOfCards > 0) {
-                            Random random = new Random();
-                            int index = random.nextInt(numberOfCards);
-                            mLesson.getUnlearnedBatch().addCard(index, mCurrentCard);
-                        } else {
-                            mLesson.getUnlearnedBatch().addCard(0, mCurrentCard);
-                        }
-                        break;
-                    default:
-                        mLesson.getUnlearnedBatch().addCard(0, mCurrentCard);
-                        break;
-                }
+                recordCardMoved(LessonJournal.UNLEARNED_BATCH, returnForgottenCard(context));
                 break;
 
             case REPEATING_LTM:
@@ -383,24 +346,8 @@ public class ModelManager {
                 LongTermBatch longTermBatch = mLesson.getLongTermBatch(longTermBatchNumber);
                 longTermBatch.removeCard(mCurrentCard);
 
-                switch (settingsManager.getStringPreference(context, RETURN_FORGOTTEN_CARDS)) {
-                    case "1":
-                        mLesson.getUnlearnedBatch().addCard(mCurrentCard);
-                        break;
-                    case "2":
-                        int numberOfCards = mLesson.getUnlearnedBatch().getNumberOfCards();
-                        if (numberOfCards > 0) {
-                            Random random = new Random();
-                            int index = random.nextInt(numberOfCards);
-                            mLesson.getUnlearnedBatch().addCard(index, mCurrentCard);
-                        } else {
-                            mLesson.getUnlearnedBatch().addCard(0, mCurrentCard);
-                        }
-                        break;
-                    default:
-                        mLesson.getUnlearnedBatch().addCard(0, mCurrentCard);
-                        break;
-                }
+                recordCardMoved(LessonJournal.UNLEARNED_BATCH, returnForgottenCard(context));
+                planReviews(position);
                 break;
 
             default:
@@ -409,6 +356,55 @@ public class ModelManager {
         }
     }
 
+    /**
+     * Fügt die aktuelle Karte abhängig von den Einstellungen wieder in den Stapel der
+     * ungelernten Karten ein.
+     * @param context Kontext der aufrufenden Activity
+     * @return Die Position der Karte im Stapel
+     */
+    private int returnForgottenCard(Context context) {
+        Batch unlearnedBatch = mLesson.getUnlearnedBatch();
+        int index;
+        switch (settingsManager.getStringPreference(context, RETURN_FORGOTTEN_CARDS)) {
+            case "1":
+                index = unlearnedBatch.getNumberOfCards();
+                break;
+            case "2":
+                int numberOfCards = unlearnedBatch.getNumberOfCards();
+                index = numberOfCards > 0 ? mSessionRandom.nextInt(numberOfCards) : 0;
+                break;
+            default:
+                index = 0;
+                break;
+        }
+        unlearnedBatch.addCard(index, mCurrentCard);
+        return index;
+    }
+
+    /**
+     * Hält den Wechsel der aktuellen Karte im Journal fest. Ist das Journal zu groß geworden,
+     * wird die Lektion gespeichert und das Journal damit geleert.
+     * @param targetBatch Nummer des Langzeitstapels oder {@link LessonJournal#UNLEARNED_BATCH}
+     * @param index       Position im Stapel der ungelernten Karten
+     */
+    private void recordCardMoved(int targetBatch, int index) {
+        if (!isLessonNotNew() || !getJournal().cardMoved(mCurrentCard, targetBatch, index)) {
+            return;
+        }
+
+        LessonSaver.instance().saveLesson(new LessonSaver.Callback() {
+            @Override
+            public void onSaveComplete() {
+                Log.d("ModelManager::recordCardMoved", "Journal compacted");
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.w("ModelManager::recordCardMoved", "Journal not compacted: " + e.getMessage());
+            }
+        });
+    }
+
     /**
      * While repeating cards the user acknowledged that the card was remembered
      * correctly, we have to move the current card one batch further
@@ -427,8 +423,9 @@ public class ModelManager {
                 }
 
                 longTermBatch = mLesson.getLongTermBatch(0);
-                longTermBatch.addCard(mCurrentCard);
                 mCurrentCard.setLearned(true);
+                longTermBatch.addCard(mCurrentCard);
+                recordCardMoved(0, -1);
                 break;
 
             case FILLING_USTM:
@@ -447,8 +444,9 @@ public class ModelManager {
                     mLesson.addLongTermBatch();
                 }
                 longTermBatch = mLesson.getLongTermBatch(0);
-                longTermBatch.addCard(mCurrentCard);
                 mCurrentCard.setLearned(true);
+                longTermBatch.addCard(mCurrentCard);
+                recordCardMoved(0, -1);
                 break;
 
             case REPEATING_LTM:
@@ -465,8 +463,9 @@ public class ModelManager {
                 }
                 LongTermBatch nextLongTermBatch =
                         mLesson.getLongTermBatch(nextLongTermBatchNumber);
-                nextLongTermBatch.addCard(mCurrentCard);
                 mCurrentCard.updateLearnedTimeStamp();
+                nextLongTermBatch.addCard(mCurrentCard);
+                recordCardMoved(nextLongTermBatchNumber, -1);
                 break;
 
             default:
@@ -492,14 +491,10 @@ public class ModelManager {
         if (!settingsManager.getBoolPreference(context, ENABLE_EXPIRE_TOAST))
             return;
 
-        File filePath = getFilePath();
-        URI uri = filePath.toURI();
-        FlashCardXMLPullFeedParser parser;
         try {
-            parser = new FlashCardXMLPullFeedParser(uri.toURL());
-            SparseLongArray map = parser.getNextExpireDate();
-            if (map.get(0) > Long.MIN_VALUE) {
-                long dateL = map.get(0);
+            LessonSummary summary = LessonSummary.forFile(getFilePath());
+            if (summary.getNextExpirationTime() > Long.MIN_VALUE) {
+                long dateL = summary.getNextExpirationTime();
                 Calendar cal = Calendar.getInstance(Locale.getDefault());
                 cal.setTimeInMillis(dateL);
                 String date = DateFormat.format("dd.MM.yyyy HH:mm", cal).toString();
@@ -515,6 +510,10 @@ public class ModelManager {
         String filename = file.getName();
         try {
             if (file.delete()) {
+                FlashCardBinaryCache.delete(file);
+                LessonSummary.delete(file);
+                FlashCardXMLStreamWriter.deleteBackups(file);
+                LessonJournal.delete(file);
                 FileOutputStream fos = context.openFileOutput(Constants.DELETED_FILES_NAMES_FILE_NAME, MODE_APPEND);
                 String text = "\n" + filename + ";*;" + System.currentTimeMillis();
                 fos.write(text.getBytes());
@@ -677,6 +676,7 @@ public class ModelManager {
      */
     public void forgetAllCards() {
         mLesson.reset();
+        invalidateJournal();
     }
 
     /**
@@ -684,6 +684,9 @@ public class ModelManager {
      */
     public void flipAllCards() {
         mLesson.flip();
+        invalidateJournal();
+        // Vorder- und Rückseite sind vertauscht
+        LessonSearch.instance().setLesson(mLesson);
     }
 
     public boolean isLessonNotNew() {
@@ -699,13 +702,14 @@ public class ModelManager {
      * @return True, wenn keine Karten vorhanden sind und die Beschreibung leer ist
      */
     public boolean isLessonEmpty() {
-        return isLessonSetup() && mLesson.getCards().isEmpty() && mLesson.getDescription().isEmpty();
+        return isLessonSetup() && mLesson.getNumberOfBatchCards() == 0 && mLesson.getDescription().isEmpty();
     }
 
     public void createNewLesson() {
         Log.d("AndyPaukerApplication::setupNewLesson", "Entry");
         Lesson newLesson = new Lesson();
         setLesson(newLesson);
+        setJournal(null);
     }
 
     public boolean deleteCard(int position) {
@@ -735,7 +739,11 @@ public class ModelManager {
             }
         }
 
-        mCurrentPack.remove(position);
+        mLesson.getSummaryBatch().removeCard(mCurrentCard);
+        LessonSearch.instance().cardRemoved(mCurrentCard);
+        mLesson.unregisterCard(mCurrentCard);
+        mCurrentPack.cardRemoved(position);
+        invalidateJournal();
 
         return true;
     }
@@ -745,8 +753,77 @@ public class ModelManager {
         setupCurrentPack(context);
     }
 
+    /**
+     * Beginnt eine neue Lernsitzung mit einem neuen Startwert für den Zufallsgenerator.
+     */
+    public void startLearningSession() {
+        startLearningSession(System.nanoTime());
+    }
+
+    /**
+     * Beginnt eine neue Lernsitzung. Mit dem Startwert aus dem Log lässt sich die Reihenfolge
+     * einer Sitzung zum Debuggen wiederholen.
+     * @param seed Startwert für den Zufallsgenerator
+     */
+    public void startLearningSession(long seed) {
+        Log.d("ModelManager::startLearningSession", "Seed = " + seed);
+        mSessionSeed = seed;
+        mSessionRandom = new SplittableRandom(seed);
+    }
+
+    /**
+     * @return Der Startwert des Zufallsgenerators der laufenden Lernsitzung
+     */
+    public long getSessionSeed() {
+        return mSessionSeed;
+    }
+
+    /**
+     * @return Der Zufallsgenerator der laufenden Lernsitzung
+     */
+    public SplittableRandom getSessionRandom() {
+        return mSessionRandom;
+    }
+
     public void setLesson(Lesson lesson) {
         mLesson = lesson;
+        LessonSearch.instance().setLesson(lesson);
+    }
+
+    /**
+     * Setzt das Journal der aktuellen Lektion.
+     * @param journal Das Journal oder <b>null</b>, wenn die Lektion noch keine Datei hat
+     */
+    public void setJournal(@Nullable LessonJournal journal) {
+        if (mJournal != null && mJournal != journal) {
+            mJournal.close();
+        }
+        mJournal = journal;
+    }
+
+    /**
+     * Verwirft das Journal, nachdem die Lektion an ihm vorbei geändert wurde. Sonst würde es
+     * beim nächsten Laden auf den alten Stand der Lektionsdatei angewendet. Erst nach dem
+     * nächsten Speichern werden die Lernfortschritte wieder festgehalten.
+     */
+    private void invalidateJournal() {
+        if (mJournal != null) {
+            mJournal.invalidate();
+        }
+    }
+
+    /**
+     * Liefert das Journal der aktuellen Lektionsdatei. Wurde die Lektion unter einem neuen
+     * Namen gespeichert, wird ein leeres Journal für die neue Datei angelegt.
+     * @return Das Journal der aktuellen Lektionsdatei
+     */
+    @NonNull
+    public LessonJournal getJournal() {
+        File file = getFilePath();
+        if (mJournal == null || !mJournal.getLessonFile().equals(file)) {
+            setJournal(LessonJournal.create(file));
+        }
+        return mJournal;
     }
 
     public void setDescription(String s) {
@@ -826,7 +903,7 @@ public class ModelManager {
     }
 
     public int getLessonSize() {
-        return mLesson.getCards().size();
+        return mLesson.getNumberOfBatchCards();
     }
 
     //TODO Have an enum BATCH_TYPE and pass that into a single getBatchSize(BatchType)
@@ -835,8 +912,21 @@ public class ModelManager {
         return mLesson.getNumberOfExpiredCards();
     }
 
+    /**
+     * @param position Die Position der aktuellen Karte im Stapel
+     * @return Die Anzahl der abgelaufenen Karten, die in dieser Sitzung noch wiederholt werden,
+     * einschließlich der aktuellen Karte und der Karten, die noch nicht auf dem Stapel liegen
+     */
+    public int getRemainingReviewCount(int position) {
+        int remainingCards = Math.max(0, mCurrentPack.size() - position);
+        if (mReviewPlanner != null) {
+            remainingCards += mReviewPlanner.getNumberOfRemainingCards();
+        }
+        return remainingCards;
+    }
+
     public int getUnlearnedBatchSize() {
-        return mLesson.getUnlearnedBatch().getCards().size();
+        return mLesson.getUnlearnedBatch().getNumberOfCards();
     }
 
     public int getUltraShortTermMemorySize() {
@@ -859,7 +949,7 @@ public class ModelManager {
      * Shuffle the card pack
      */
     private void shuffleCurrentPack() {
-        Collections.shuffle(mCurrentPack);
+        mCurrentPack.shuffle(mSessionRandom);
     }
 
     /*
@@ -877,7 +967,55 @@ public class ModelManager {
             }
         }
 
-        return mLearningPhase == LearningPhase.REPEATING_LTM
-                && settingsManager.getBoolPreference(context, LEARN_NEW_CARDS_RANDOMLY);
+        // Abgelaufene Karten bringt der ReviewPlanner selbst in die richtige Reihenfolge
+        return false;
+    }
+
+    /**
+     * Legt weitere abgelaufene Karten hinten auf den Stapel, wenn beim Wiederholen nur noch
+     * wenige Karten hinter der aktuellen liegen. Dabei kommen auch die Karten dazu, die
+     * während des Lernens abgelaufen sind.
+     * @param position Die Position der aktuellen Karte im Stapel
+     */
+    private void planReviews(int position) {
+        if (mLearningPhase == LearningPhase.REPEATING_LTM && mReviewPlanner != null
+                && mCurrentPack.size() - position <= REVIEW_PAGE_SIZE / 2) {
+            mCurrentPack.addCards(mReviewPlanner.nextCards(REVIEW_PAGE_SIZE));
+        }
+    }
+
+    /**
+     * @param context Kontext der aufrufenden Activity
+     * @return Die Reihenfolge, in der die abgelaufenen Karten wiederholt werden
+     */
+    private ReviewPlanner.Order getReviewOrder(Context context) {
+        if (settingsManager.getBoolPreference(context, LEARN_NEW_CARDS_RANDOMLY)) {
+            return ReviewPlanner.Order.RANDOM;
+        }
+        switch (settingsManager.getStringPreference(context, REPEAT_CARDS)) {
+            case "1":
+                return ReviewPlanner.Order.OLDEST_FIRST;
+            case "2":
+                return ReviewPlanner.Order.RANDOM;
+            case "3":
+                return ReviewPlanner.Order.BY_BATCH;
+            case "4":
+                return ReviewPlanner.Order.INTERLEAVED;
+            default:
+                return ReviewPlanner.Order.NEWEST_FIRST;
+        }
+    }
+
+    /**
+     * @param context Kontext der aufrufenden Activity
+     * @return Wie viele abgelaufene Karten pro Tag höchstens wiederholt werden, 0 für beliebig
+     * viele
+     */
+    private int getReviewLimit(Context context) {
+        try {
+            return Integer.parseInt(settingsManager.getStringPreference(context, REVIEW_LIMIT));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
     }
 }
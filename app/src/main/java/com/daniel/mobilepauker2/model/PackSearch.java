@@ -0,0 +1,196 @@
+package com.daniel.mobilepauker2.model;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LongSparseArray;
+
+import com.daniel.mobilepauker2.model.pauker_native.Card;
+import com.daniel.mobilepauker2.model.pauker_native.CardSide;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Durchsucht einen Stapel, während der Suchtext eingegeben wird. Verlängert der neue Suchtext
+ * den letzten, werden nur noch die Karten des letzten Ergebnisses geprüft. Gesucht wird im
+ * Hintergrund, eine neue Suche bricht die laufende ab. Alle Methoden müssen im Mainthread
+ * aufgerufen werden.
+ */
+public class PackSearch {
+    // So oft wird beim Durchsuchen geprüft, ob die Suche noch aktuell ist
+    private static final int CANCEL_CHECK_INTERVAL = 256;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Callback callback;
+    private LongSparseArray<Integer> packPositions = new LongSparseArray<>();
+    private PackTexts packTexts = new PackTexts(0);
+    // Das zuletzt veröffentlichte Ergebnis
+    private String lastQuery = null;
+    private int[] lastPositions = null;
+    private volatile int generation = 0;
+
+    /**
+     * @param callback Bekommt die Ergebnisse im Mainthread
+     */
+    public PackSearch(Callback callback) {
+        this.callback = callback;
+    }
+
+    /**
+     * Setzt den Stapel, der durchsucht wird. Eine laufende Suche wird abgebrochen.
+     * @param pack Der Stapel
+     */
+    public void setPack(List<FlashCard> pack) {
+        clear();
+        packPositions = new LongSparseArray<>(pack.size());
+        packTexts = new PackTexts(pack.size());
+        // Die Texte werden im Mainthread eingesammelt, damit der Hintergrund keine Karten liest.
+        // Normalisiert werden sie erst im Hintergrund.
+        for (int i = 0; i < pack.size(); i++) {
+            FlashCard card = pack.get(i);
+            packPositions.put(card.getId(), i);
+            packTexts.front[i] = card.getFrontSide().getText();
+            packTexts.reverse[i] = card.getReverseSide().getText();
+        }
+    }
+
+    /**
+     * Sucht nach den Karten des Stapels, die einen Text enthalten. Groß- und Kleinschreibung
+     * sowie Akzente werden nicht beachtet. Das Ergebnis wird an den Callback übergeben, außer
+     * es wurde vorher eine neue Suche gestartet.
+     * @param query Der gesuchte Text, darf nicht leer sein
+     */
+    public void search(String query) {
+        final int queryGeneration = ++generation;
+        final String normalizedQuery = CardSide.normalize(query);
+
+        // Alles, was den neuen Text enthält, enthält auch den alten
+        final int[] candidates = lastQuery != null && normalizedQuery.contains(lastQuery)
+                ? lastPositions : null;
+        if (candidates == null) {
+            long[] ids = LessonSearch.instance().search(query, Card.Element.BOTH_SIDES);
+            if (ids != null) {
+                publish(queryGeneration, normalizedQuery, getPositions(ids));
+                return;
+            }
+        }
+
+        final PackTexts texts = packTexts;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final int[] positions = filter(queryGeneration, normalizedQuery, candidates, texts);
+                if (positions == null) {
+                    return;
+                }
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        publish(queryGeneration, normalizedQuery, positions);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Bricht die laufende Suche ab und vergisst das letzte Ergebnis.
+     */
+    public void clear() {
+        generation++;
+        lastQuery = null;
+        lastPositions = null;
+    }
+
+    /**
+     * Bricht die laufende Suche ab und beendet den Hintergrundthread.
+     */
+    public void release() {
+        clear();
+        executor.shutdownNow();
+    }
+
+    private int[] getPositions(long[] ids) {
+        int[] positions = new int[ids.length];
+        int numberOfPositions = 0;
+        for (long id : ids) {
+            Integer position = packPositions.get(id);
+            if (position != null) {
+                positions[numberOfPositions++] = position;
+            }
+        }
+        Arrays.sort(positions, 0, numberOfPositions);
+        return Arrays.copyOf(positions, numberOfPositions);
+    }
+
+    /**
+     * Prüft die Karten im Hintergrund.
+     * @return Die Positionen der passenden Karten oder <b>null</b>, wenn die Suche nicht mehr
+     * aktuell ist
+     */
+    private int[] filter(int queryGeneration, String normalizedQuery, int[] candidates,
+                         PackTexts texts) {
+        int numberOfCandidates = candidates == null ? texts.front.length : candidates.length;
+        int[] positions = new int[numberOfCandidates];
+        int numberOfPositions = 0;
+        for (int i = 0; i < numberOfCandidates; i++) {
+            if (i % CANCEL_CHECK_INTERVAL == 0 && generation != queryGeneration) {
+                return null;
+            }
+            int position = candidates == null ? i : candidates[i];
+            texts.normalize(position);
+            if (texts.front[position].contains(normalizedQuery)
+                    || texts.reverse[position].contains(normalizedQuery)) {
+                positions[numberOfPositions++] = position;
+            }
+        }
+        return Arrays.copyOf(positions, numberOfPositions);
+    }
+
+    private void publish(int queryGeneration, String normalizedQuery, int[] positions) {
+        if (queryGeneration != generation) {
+            return;
+        }
+        lastQuery = normalizedQuery;
+        lastPositions = positions;
+        callback.onResults(positions);
+    }
+
+    /**
+     * Die Texte eines Stapels. Sie werden im Mainthread eingesammelt und erst im Hintergrund
+     * normalisiert, wenn sie zum ersten Mal durchsucht werden.
+     */
+    private static class PackTexts {
+        private final String[] front;
+        private final String[] reverse;
+        private final boolean[] normalized;
+
+        PackTexts(int size) {
+            front = new String[size];
+            reverse = new String[size];
+            normalized = new boolean[size];
+        }
+
+        /**
+         * Normalisiert die Texte einer Karte. Darf nur im Hintergrundthread aufgerufen werden.
+         */
+        void normalize(int position) {
+            if (!normalized[position]) {
+                front[position] = CardSide.normalize(front[position]);
+                reverse[position] = CardSide.normalize(reverse[position]);
+                normalized[position] = true;
+            }
+        }
+    }
+
+    public interface Callback {
+        /**
+         * @param positions Die Positionen der passenden Karten im Stapel in aufsteigender
+         *                  Reihenfolge
+         */
+        void onResults(int[] positions);
+    }
+}
@@ -24,6 +24,7 @@ import static com.daniel.mobilepauker2.model.SettingsManager.Keys.AUTO_SYNC;
 import static com.daniel.mobilepauker2.model.SettingsManager.Keys.FLIP_CARD_SIDES;
 import static com.daniel.mobilepauker2.model.SettingsManager.Keys.REPEAT_CARDS;
 import static com.daniel.mobilepauker2.model.SettingsManager.Keys.RETURN_FORGOTTEN_CARDS;
+import static com.daniel.mobilepauker2.model.SettingsManager.Keys.REVIEW_LIMIT;
 import static com.daniel.mobilepauker2.model.SettingsManager.Keys.DB_PREFERENCE;
 import static com.daniel.mobilepauker2.model.SettingsManager.Keys.STM;
 import static com.daniel.mobilepauker2.model.SettingsManager.Keys.USTM;
@@ -110,6 +111,8 @@ public class SettingsFragment extends PreferenceFragment
                     summ = getString(R.string.return_forgotten_cards_summ);
                 } else if (s.equals(settingsManager.getSettingsKey(context, FLIP_CARD_SIDES))) {
                     summ = getString(R.string.flip_card_sides_summ);
+                } else if (s.equals(settingsManager.getSettingsKey(context, REVIEW_LIMIT))) {
+                    summ = getString(R.string.review_limit_summ);
                 }
 
                 listP.setSummary(String.format(summ.toString(), listP.getEntry()));
@@ -41,6 +41,8 @@ public class SettingsManager {
                 return context.getString(R.string.hide_times);
             case REPEAT_CARDS:
                 return context.getString(R.string.repeat_cards_mode);
+            case REVIEW_LIMIT:
+                return context.getString(R.string.review_limit);
             case CASE_SENSITIV:
                 return context.getString(R.string.case_sensitive);
             case FLIP_CARD_SIDES:
@@ -69,6 +71,8 @@ public class SettingsManager {
                 return context.getString(R.string.ustm_default);
             case REPEAT_CARDS:
                 return context.getString(R.string.repeat_cards_default);
+            case REVIEW_LIMIT:
+                return context.getString(R.string.review_limit_default);
             case FLIP_CARD_SIDES:
                 return context.getString(R.string.flip_card_sides_default);
             case RETURN_FORGOTTEN_CARDS:
@@ -118,6 +122,7 @@ public class SettingsManager {
         STM,
         HIDE_TIMES,
         REPEAT_CARDS,
+        REVIEW_LIMIT,
         RETURN_FORGOTTEN_CARDS,
         AUTO_SAVE,
         ABOUT,
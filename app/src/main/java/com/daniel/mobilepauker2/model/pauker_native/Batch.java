@@ -1,11 +1,16 @@
 package com.daniel.mobilepauker2.model.pauker_native;
 
+import java.text.CollationKey;
 import java.text.Collator;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -15,13 +20,38 @@ import java.util.logging.Logger;
  */
 public class Batch {
 
+    /**
+     * the ways a search pattern can match the text of a card side
+     */
+    public enum SearchMode {
+
+        /**
+         * the pattern matches anywhere in the text
+         */
+        SUBSTRING,
+        /**
+         * the pattern matches only whole words
+         */
+        WHOLE_WORD,
+        /**
+         * the pattern matches only at the beginning of words
+         */
+        PREFIX,
+        /**
+         * the pattern is a regular expression
+         */
+        REGULAR_EXPRESSION
+    }
+
     /**
      * the list of all cards in this batch
      */
-    protected final List<Card> cards;
+    protected final CardList cards;
     private static final Logger LOGGER =
             Logger.getLogger(Batch.class.getName());
     private static final Collator collator = Collator.getInstance();
+    // batches with at least this many cards are searched in parallel
+    private static final int PARALLEL_SEARCH_THRESHOLD = 2048;
 
     private static abstract class AbstractCardComparator<Card>
             implements Comparator<Card> {
@@ -118,9 +148,12 @@ public class Batch {
     private String searchPattern;
     private Card.Element searchSide;
     private boolean matchCase;
-    private final List<SearchHit> searchHits;
+    private SearchMode searchMode = SearchMode.SUBSTRING;
+    // the pattern normalized or compiled for the current search parameters,
+    // <CODE>null</CODE> if there is nothing to search for
+    private SearchQuery searchQuery;
+    private final SearchHitBuffer searchHits;
     private int currentSearchHit;
-    private SearchHit savedSearchHit;
 
     /**
      * constructs a new Batch with all the cards in <CODE>cards</CODE>
@@ -128,12 +161,13 @@ public class Batch {
      */
     public Batch(List<Card> cards) {
         if (cards == null) {
-            this.cards = new ArrayList<>();
+            this.cards = new CardList();
         } else {
-            this.cards = cards;
+            this.cards = new CardList(cards);
         }
 
-        searchHits = new LinkedList<>();
+        searchHits = new SearchHitBuffer();
+        currentSearchHit = -1;
     }
 
     /**
@@ -178,6 +212,10 @@ public class Batch {
     public void addCard(int index, Card card) {
         cards.add(index, card);
         card.setLearned(false);
+
+        // the hits of the following cards move one index down, the order of
+        // the hits stays the same
+        searchHits.insertCard(index);
     }
 
     /**
@@ -190,8 +228,22 @@ public class Batch {
         }
     }
 
+    /**
+     * appends cards that are already unlearned to the end of the batch
+     * <p>
+     * The hits of the cards already in the batch keep their index, so the
+     * search hits stay valid.
+     * @param cards the new cards, they must already be marked as unlearned
+     */
+    void appendUnlearnedCards(List<Card> cards) {
+        this.cards.addAll(cards);
+    }
+
     /**
      * removes a card from the batch
+     * <p>
+     * The card is found by identity, so a card with the same content stays
+     * in the batch.
      * @param card the card to be removed
      * @return <tt>true</tt>, if the card could be removed
      */
@@ -211,17 +263,22 @@ public class Batch {
      * @return the removed card
      */
     public Card removeCard(int index) {
-        // save current search hit
-        savedSearchHit = getCurrentSearchHit();
-
         // remove card
         Card card = cards.remove(index);
 
-        // re-fill searchHits list (all indices are potentially wrong now)
-        search(searchPattern, matchCase, searchSide);
-
-        // restore current search hit
-        restoreSearchHit();
+        // the hits of the following cards move one index up
+        if (searchHits.size() > 0) {
+            long currentHit = getCurrentHit();
+            searchHits.removeCard(index);
+            if (currentHit == -1 || SearchHitBuffer.getCardIndex(currentHit) == index) {
+                // like repeatSearch(), continue at the first remaining hit
+                currentSearchHit = searchHits.size() > 0 ? 0 : -1;
+            } else if (SearchHitBuffer.getCardIndex(currentHit) > index) {
+                currentSearchHit = searchHits.indexOf(currentHit - (1L << 32));
+            } else {
+                currentSearchHit = searchHits.indexOf(currentHit);
+            }
+        }
 
         return card;
     }
@@ -229,7 +286,8 @@ public class Batch {
     /**
      * determines the index of a special card
      * @param card the card
-     * @return the index of the card
+     * @return the index of the card or -1, if this batch does not hold this
+     * card
      */
     public int indexOf(Card card) {
         return cards.indexOf(card);
@@ -248,8 +306,9 @@ public class Batch {
      * @param offset the offset of the movement
      */
     public void moveCards(int[] rows, int offset) {
-        // save current search hit
-        savedSearchHit = getCurrentSearchHit();
+        // remember the cards for moving the search hits
+        Card[] originalSorting = searchHits.size() > 0
+                ? cards.toArray(new Card[cards.size()]) : null;
 
         // move
         if (offset > 0) {
@@ -264,11 +323,13 @@ public class Batch {
             }
         }
 
-        // reload search hits (without searching)
-        reloadSearchHits();
-
-        // restore current search hit
-        restoreSearchHit();
+        if (originalSorting != null) {
+            int[] newIndices = new int[originalSorting.length];
+            for (int i = 0; i < originalSorting.length; i++) {
+                newIndices[i] = cards.indexOf(originalSorting[i]);
+            }
+            moveSearchHits(newIndices);
+        }
     }
 
     /**
@@ -278,32 +339,23 @@ public class Batch {
      * them up
      */
     public int[] shuffle(int[] selectedCards) {
-        // save current search hit
-        savedSearchHit = getCurrentSearchHit();
-
-        // remember original sorting
-        Object[] originalSorting = cards.toArray();
-
-        // actual shuffling
-        Collections.shuffle(cards);
+        // shuffle the order instead of the cards, so the new index of every
+        // card is known without searching for it
+        int numberOfCards = cards.size();
+        Card[] originalSorting = cards.toArray(new Card[numberOfCards]);
+        Integer[] order = getIdentityOrder(numberOfCards);
+        Collections.shuffle(Arrays.asList(order));
+        int[] newIndices = applyOrder(originalSorting, order);
 
         // determine new sorting
         // (needed for scrolling to the previously selected cards)
         int indices = selectedCards.length;
-        int[] newIndices = new int[indices];
+        int[] newSelectedIndices = new int[indices];
         for (int i = 0; i < indices; i++) {
-            int selectedIndex = selectedCards[i];
-            Card selectedCard = (Card) originalSorting[selectedIndex];
-            newIndices[i] = cards.indexOf(selectedCard);
+            newSelectedIndices[i] = newIndices[selectedCards[i]];
         }
 
-        // reload search hits (without searching)
-        reloadSearchHits();
-
-        // restore current search hit
-        restoreSearchHit();
-
-        return newIndices;
+        return newSelectedIndices;
     }
 
     /**
@@ -343,19 +395,94 @@ public class Batch {
 
             comparator.setAscending(ascending);
 
-            Card[] originalSorting = (Card[]) cards.toArray();
-            Collections.sort(cards, comparator);
-
+            // sort the order of the cards and not the cards themselves, so the
+            // new index of every card is known without searching for it
             int numberOfCards = cards.size();
-            int[] newIndices = new int[numberOfCards];
-            for (int i = 0; i < numberOfCards; i++) {
-                newIndices[i] = cards.indexOf(originalSorting[i]);
+            Card[] originalSorting = cards.toArray(new Card[numberOfCards]);
+            Integer[] order = getIdentityOrder(numberOfCards);
+            Arrays.sort(order, getOrderComparator(
+                    originalSorting, cardElement, comparator, ascending));
+            return applyOrder(originalSorting, order);
+        }
+
+        return null;
+    }
+
+    /**
+     * returns a comparator for the indices of <CODE>originalSorting</CODE>
+     * <p>
+     * The texts of the card sides are collated once per card and not once
+     * per comparison.
+     */
+    private static Comparator<Integer> getOrderComparator(final Card[] originalSorting,
+                                                          Card.Element cardElement,
+                                                          final AbstractCardComparator<Card> comparator,
+                                                          final boolean ascending) {
+        if (cardElement == Card.Element.FRONT_SIDE
+                || cardElement == Card.Element.REVERSE_SIDE) {
+            final CollationKey[] keys = new CollationKey[originalSorting.length];
+            for (int i = 0; i < originalSorting.length; i++) {
+                Card card = originalSorting[i];
+                CardSide cardSide = cardElement == Card.Element.FRONT_SIDE
+                        ? card.getFrontSide() : card.getReverseSide();
+                String text = cardSide.getText();
+                keys[i] = collator.getCollationKey(text == null ? "" : text);
             }
+            return new Comparator<Integer>() {
 
-            return newIndices;
+                public int compare(Integer index1, Integer index2) {
+                    int result = keys[index1].compareTo(keys[index2]);
+                    return ascending ? result : -result;
+                }
+            };
         }
 
-        return null;
+        return new Comparator<Integer>() {
+
+            public int compare(Integer index1, Integer index2) {
+                return comparator.compare(
+                        originalSorting[index1], originalSorting[index2]);
+            }
+        };
+    }
+
+    private static Integer[] getIdentityOrder(int numberOfCards) {
+        Integer[] order = new Integer[numberOfCards];
+        for (int i = 0; i < numberOfCards; i++) {
+            order[i] = i;
+        }
+        return order;
+    }
+
+    /**
+     * puts the cards into a new order and moves the search hits along
+     * @param originalSorting the cards in their old order
+     * @param order           the old indices of the cards in their new order
+     * @return the new index for every old index
+     */
+    private int[] applyOrder(Card[] originalSorting, Integer[] order) {
+        int[] newIndices = new int[order.length];
+        Card[] newSorting = new Card[order.length];
+        for (int i = 0; i < order.length; i++) {
+            newIndices[order[i]] = i;
+            newSorting[i] = originalSorting[order[i]];
+        }
+        // the list is rebuilt at once, so its index is rebuilt only once
+        cards.clear();
+        cards.addAll(Arrays.asList(newSorting));
+        moveSearchHits(newIndices);
+        return newIndices;
+    }
+
+    private void moveSearchHits(int[] newIndices) {
+        if (searchHits.size() == 0) {
+            return;
+        }
+        long currentHit = getCurrentHit();
+        searchHits.moveCards(newIndices);
+        if (currentHit != -1) {
+            currentSearchHit = searchHits.indexOf(SearchHitBuffer.move(currentHit, newIndices));
+        }
     }
 
     /**
@@ -366,10 +493,31 @@ public class Batch {
      * @return if true a pattern match was found
      */
     public boolean search(String searchPattern, boolean matchCase, Card.Element cardSide) {
+        return search(searchPattern, matchCase, cardSide, SearchMode.SUBSTRING);
+    }
+
+    /**
+     * searches for a given pattern
+     * @param searchPattern the pattern to search for
+     * @param matchCase     if true the search is case sensitive
+     * @param cardSide      the side to search at
+     * @param searchMode    how the pattern must match
+     * @return if true a pattern match was found
+     * @throws java.util.regex.PatternSyntaxException if the search mode is
+     *                                                REGULAR_EXPRESSION and
+     *                                                the pattern is not valid
+     */
+    public boolean search(String searchPattern, boolean matchCase, Card.Element cardSide,
+                          SearchMode searchMode) {
+        // check the pattern before anything is changed
+        SearchQuery query = prepareSearch(searchPattern, matchCase, searchMode);
+
         // store search parameters
         this.searchPattern = searchPattern;
         this.matchCase = matchCase;
+        this.searchMode = searchMode;
         searchSide = cardSide;
+        searchQuery = query;
 
         if (refreshSearchHits()) {
             currentSearchHit = 0;
@@ -403,15 +551,52 @@ public class Batch {
         return searchSide;
     }
 
+    /**
+     * returns the search mode
+     * @return the search mode
+     */
+    public SearchMode getSearchMode() {
+        return searchMode;
+    }
+
     /**
      * returns the current search hit
      * @return the current search hit
      */
     public SearchHit getCurrentSearchHit() {
+        long currentHit = getCurrentHit();
+        if (currentHit == -1) {
+            return null;
+        }
+        return new SearchHit(cards.get(SearchHitBuffer.getCardIndex(currentHit)),
+                SearchHitBuffer.getCardSide(currentHit),
+                SearchHitBuffer.getTextIndex(currentHit));
+    }
+
+    /**
+     * returns the number of search hits
+     * @return the number of search hits
+     */
+    public int getNumberOfSearchHits() {
+        return searchHits.size();
+    }
+
+    /**
+     * returns the index of the card of the current search hit
+     * @return the index of the card of the current search hit or -1, if
+     * there is no current search hit
+     */
+    public int getCurrentSearchHitCardIndex() {
+        long currentHit = getCurrentHit();
+        return currentHit == -1 ? -1 : SearchHitBuffer.getCardIndex(currentHit);
+    }
+
+    // returns the packed current search hit or -1
+    private long getCurrentHit() {
         if ((currentSearchHit > -1) && (currentSearchHit < searchHits.size())) {
             return searchHits.get(currentSearchHit);
         }
-        return null;
+        return -1;
     }
 
     /**
@@ -473,18 +658,36 @@ public class Batch {
         if (searchPattern == null) {
             return false;
         }
+        searchQuery = prepareSearch(searchPattern, matchCase, searchMode);
         this.matchCase = matchCase;
         return repeatSearch();
     }
 
+    /**
+     * sets the search mode
+     * @param searchMode how the pattern must match
+     * @return <CODE>true</CODE>, if there is still a search hit,
+     * <CODE>false</CODE> otherwise
+     * @throws java.util.regex.PatternSyntaxException if the search mode is
+     *                                                REGULAR_EXPRESSION and
+     *                                                the pattern is not valid
+     */
+    public boolean setSearchMode(SearchMode searchMode) {
+        // early return
+        if (searchPattern == null) {
+            return false;
+        }
+        searchQuery = prepareSearch(searchPattern, matchCase, searchMode);
+        this.searchMode = searchMode;
+        return repeatSearch();
+    }
+
     /**
      * stops any search process
      */
     public void stopSearching() {
-        for (Card card : cards) {
-            card.stopSearching();
-        }
         searchPattern = null;
+        searchQuery = null;
         searchHits.clear();
         currentSearchHit = -1;
     }
@@ -496,17 +699,11 @@ public class Batch {
      */
     public boolean repeatSearch() {
         // remember old searchHit
-        SearchHit oldSearchHit = null;
-        if ((currentSearchHit > -1) && (currentSearchHit < searchHits.size())) {
-            Object tmpObject = searchHits.get(currentSearchHit);
-            if (tmpObject != null) {
-                oldSearchHit = (SearchHit) tmpObject;
-            }
-        }
+        long oldSearchHit = getCurrentHit();
 
         // re-fill the searchHits list
         if (refreshSearchHits()) {
-            if (oldSearchHit != null) {
+            if (oldSearchHit != -1) {
                 // is oldSearchHit still in there?
                 int tmpIndex = searchHits.indexOf(oldSearchHit);
                 if (tmpIndex == -1) {
@@ -520,29 +717,74 @@ public class Batch {
         return false;
     }
 
+    /**
+     * normalizes or compiles a search pattern once and not for every card
+     * @return the prepared pattern or <CODE>null</CODE>, if there is nothing
+     * to search for
+     * @throws java.util.regex.PatternSyntaxException if the search mode is
+     *                                                REGULAR_EXPRESSION and
+     *                                                the pattern is not valid
+     */
+    private static SearchQuery prepareSearch(String searchPattern, boolean matchCase,
+                                             SearchMode searchMode) {
+        if ((searchPattern == null) || (searchPattern.length() == 0)) {
+            return null;
+        }
+        return new SearchQuery(searchPattern, matchCase, searchMode);
+    }
+
     private boolean refreshSearchHits() {
         searchHits.clear();
-        if ((searchPattern == null) || (searchPattern.length() == 0)) {
+        SearchQuery query = searchQuery;
+        if (query == null) {
             return false;
         }
-        for (Card card : cards) {
-            searchHits.addAll(card.search(searchSide, searchPattern, matchCase));
+        Card[] batchCards = cards.toArray(new Card[cards.size()]);
+        int numberOfChunks = Runtime.getRuntime().availableProcessors() * 2;
+        if (batchCards.length < PARALLEL_SEARCH_THRESHOLD || numberOfChunks <= 2) {
+            query.search(batchCards, 0, batchCards.length, searchSide, searchHits);
+        } else {
+            searchInParallel(query, batchCards, numberOfChunks);
         }
-        return !searchHits.isEmpty();
+        return searchHits.size() > 0;
     }
 
-    private boolean reloadSearchHits() {
-        searchHits.clear();
-        for (Card card : cards) {
-            searchHits.addAll(card.getSearchHits());
+    /**
+     * searches chunks of cards in parallel and appends their hits in card
+     * order
+     */
+    private void searchInParallel(final SearchQuery query, final Card[] batchCards,
+                                  int numberOfChunks) {
+        int chunkSize = (batchCards.length + numberOfChunks - 1) / numberOfChunks;
+        List<Callable<SearchHitBuffer>> chunks = new ArrayList<>(numberOfChunks);
+        for (int from = 0; from < batchCards.length; from += chunkSize) {
+            final int chunkFrom = from;
+            final int chunkTo = Math.min(from + chunkSize, batchCards.length);
+            chunks.add(new Callable<SearchHitBuffer>() {
+
+                public SearchHitBuffer call() {
+                    SearchHitBuffer chunkHits = new SearchHitBuffer();
+                    query.search(batchCards, chunkFrom, chunkTo, searchSide, chunkHits);
+                    return chunkHits;
+                }
+            });
         }
-        return !searchHits.isEmpty();
-    }
 
-    private void restoreSearchHit() {
-        // restore current search hit
-        if (savedSearchHit != null) {
-            currentSearchHit = searchHits.indexOf(savedSearchHit);
+        try {
+            for (Future<SearchHitBuffer> chunkHits : ForkJoinPool.commonPool().invokeAll(chunks)) {
+                searchHits.addAll(chunkHits.get());
+            }
+        } catch (InterruptedException ex) {
+            LOGGER.log(Level.WARNING, "parallel search interrupted", ex);
+            Thread.currentThread().interrupt();
+            searchHits.clear();
+            query.search(batchCards, 0, batchCards.length, searchSide, searchHits);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
         }
     }
 }
\ No newline at end of file
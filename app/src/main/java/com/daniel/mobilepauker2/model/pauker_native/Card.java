@@ -2,9 +2,7 @@ package com.daniel.mobilepauker2.model.pauker_native;
 
 import android.support.annotation.NonNull;
 
-import java.util.LinkedList;
-import java.util.List;
-
+import java.util.regex.Matcher;
 
 /**
  * A card is part of a batch. Besides having a front side and a reverse side
@@ -14,7 +12,10 @@ import java.util.List;
  */
 public class Card implements Comparable<Card> {
 
-    private class UID {}
+    /**
+     * the id of a card that does not belong to a lesson yet
+     */
+    public static final long NO_ID = 0;
 
     /**
      * the elements of a card
@@ -53,8 +54,8 @@ public class Card implements Comparable<Card> {
 
     protected CardSide frontSide;
     protected CardSide reverseSide;
-    // for indexing; unique id will be used to store card in the object-store
-    private String id;
+    // for indexing; unique within the lesson, assigned by Lesson#registerCard
+    private long id = NO_ID;
     private long expirationTime;
 
     /**
@@ -129,6 +130,17 @@ public class Card implements Comparable<Card> {
         return reverseSide;
     }
 
+    /**
+     * returns a copy of this card that does not share any changeable state with it
+     * @return a copy of this card
+     */
+    Card copy() {
+        Card copy = new Card(frontSide.copy(), reverseSide.copy());
+        copy.id = id;
+        copy.expirationTime = expirationTime;
+        return copy;
+    }
+
     /**
      * returns the timestamp when the card was learned
      * @return the timestamp when the card was learned
@@ -142,17 +154,23 @@ public class Card implements Comparable<Card> {
     }
 
     /**
-     * returns the unique object identifier<br>
+     * returns the unique card identifier<br>
      * used for indexing!
-     * @return the unique object id
+     * @return the id of this card within its lesson or {@link #NO_ID}, if the
+     * card does not belong to a lesson yet
      */
-    public String getId() {
-        if (id == null) {
-            this.id = new UID().toString();
-        }
+    public long getId() {
         return id;
     }
 
+    /**
+     * sets the unique card identifier
+     * @param id the id of this card within its lesson
+     */
+    void setId(long id) {
+        this.id = id;
+    }
+
     /**
      * sets if the card is learned or not
      * @param learned if true the cards state is set to learned and the current date is used as
@@ -244,50 +262,22 @@ public class Card implements Comparable<Card> {
     }
 
     /**
-     * Sets a search pattern onto this card.
-     * @param pattern   the search pattern
-     * @param matchCase if the case of the pattern must be matched
-     * @param cardSide  the card side where to look for the pattern can be one of: Pauker.FRONT_SIDE
-     *                  Pauker.REVERSE_SIDE Pauker.BOTH_SIDES
-     * @return a list with search match indices
+     * Searches for a pattern on this card.
+     * @param cardSide   the card side where to look for the pattern can be one of: Pauker.FRONT_SIDE
+     *                   Pauker.REVERSE_SIDE Pauker.BOTH_SIDES
+     * @param query      the search query
+     * @param matcher    the matcher of the calling thread or <CODE>null</CODE>
+     * @param searchHits the search hits of the batch
+     * @param cardIndex  the index of this card in the batch
      */
-    public List<SearchHit> search(
-            Element cardSide, String pattern, boolean matchCase) {
-        LinkedList<SearchHit> searchHits = new LinkedList<>();
-        if (cardSide == Element.FRONT_SIDE) {
-            searchHits.addAll(frontSide.search(
-                    this, Element.FRONT_SIDE, pattern, matchCase));
-            reverseSide.cancelSearch();
-        } else if (cardSide == Element.REVERSE_SIDE) {
-            frontSide.cancelSearch();
-            searchHits.addAll(reverseSide.search(
-                    this, Element.REVERSE_SIDE, pattern, matchCase));
-        } else { // BOTH_SIDES
-            searchHits.addAll(frontSide.search(
-                    this, Element.FRONT_SIDE, pattern, matchCase));
-            searchHits.addAll(reverseSide.search(
-                    this, Element.REVERSE_SIDE, pattern, matchCase));
+    void search(Element cardSide, SearchQuery query, Matcher matcher,
+                SearchHitBuffer searchHits, int cardIndex) {
+        if (cardSide != Element.REVERSE_SIDE) {
+            query.search(frontSide, matcher, searchHits, cardIndex, Element.FRONT_SIDE);
+        }
+        if (cardSide != Element.FRONT_SIDE) {
+            query.search(reverseSide, matcher, searchHits, cardIndex, Element.REVERSE_SIDE);
         }
-        return searchHits;
-    }
-
-    /**
-     * returns a list of search hits at this card side
-     * @return a list of search hits at this card side
-     */
-    List<SearchHit> getSearchHits() {
-        List<SearchHit> searchHits = new LinkedList<>();
-        searchHits.addAll(frontSide.getSearchHits());
-        searchHits.addAll(reverseSide.getSearchHits());
-        return searchHits;
-    }
-
-    /**
-     * clears the search hits list on both card sides
-     */
-    void stopSearching() {
-        frontSide.cancelSearch();
-        reverseSide.cancelSearch();
     }
 
     /**
@@ -0,0 +1,413 @@
+package com.daniel.mobilepauker2.model.pauker_native;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * the list of cards of a batch
+ * <p>
+ * Cards are identified by identity and not by {@link Card#equals(Object)},
+ * so two cards with the same content are still two different cards. A card
+ * must not be held twice by the same list.
+ * <p>
+ * The cards are stored in small chunks and every card knows its chunk. A
+ * card can therefore be found and removed without scanning the list, and
+ * inserting a card at the front or at any other position only moves the
+ * cards of one chunk. The start index of every chunk is computed again
+ * after the list was changed, the next time a card is accessed by index.
+ * Appending, inserting and removing cards by reference (what happens while
+ * learning) therefore costs constant time, accessing a card by index costs
+ * logarithmic time.
+ */
+class CardList extends AbstractList<Card> implements RandomAccess {
+
+    private static final int DEFAULT_CAPACITY = 16;
+    // a full chunk is split into two halves
+    private static final int CHUNK_CAPACITY = 128;
+    // a chunk with less cards is merged with the next chunk, if they fit
+    private static final int MERGE_THRESHOLD = CHUNK_CAPACITY / 4;
+    private final IdentityHashMap<Card, Chunk> chunkIndex;
+    private Chunk[] chunks;
+    private int numberOfChunks;
+    // the index of the first card of every chunk
+    private int[] chunkStarts;
+    // the start indices of the chunks before this one are up to date
+    private int validStarts;
+    private int size;
+
+    /**
+     * creates a new empty CardList
+     */
+    CardList() {
+        chunks = new Chunk[1];
+        chunkStarts = new int[1];
+        chunkIndex = new IdentityHashMap<>();
+    }
+
+    /**
+     * creates a new CardList with the given cards
+     * @param cards the initial cards
+     */
+    CardList(Collection<? extends Card> cards) {
+        int capacity = cards.size() / CHUNK_CAPACITY + 1;
+        chunks = new Chunk[capacity];
+        chunkStarts = new int[capacity];
+        chunkIndex = new IdentityHashMap<>(cards.size());
+        for (Card card : cards) {
+            add(card);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Card get(int index) {
+        checkIndex(index);
+        int position = findChunk(index);
+        return chunks[position].cards[index - chunkStarts[position]];
+    }
+
+    @Override
+    public Card set(int index, Card card) {
+        checkIndex(index);
+        int position = findChunk(index);
+        Chunk chunk = chunks[position];
+        int offset = index - chunkStarts[position];
+        Card oldCard = chunk.cards[offset];
+        chunk.cards[offset] = card;
+        chunkIndex.put(card, chunk);
+        // while the cards are permuted slot by slot the old card may already
+        // have been written to another slot, then it must stay in the index
+        if (oldCard != card && chunkIndex.get(oldCard) == chunk
+                && chunk.indexOf(oldCard) == -1) {
+            chunkIndex.remove(oldCard);
+        }
+        return oldCard;
+    }
+
+    @Override
+    public boolean add(Card card) {
+        Chunk chunk = numberOfChunks == 0 ? null : chunks[numberOfChunks - 1];
+        if (chunk == null || chunk.size == CHUNK_CAPACITY) {
+            chunk = insertChunk(numberOfChunks, DEFAULT_CAPACITY);
+        }
+        chunk.insert(chunk.size, card);
+        chunkIndex.put(card, chunk);
+        size++;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Card> cards) {
+        for (Card card : cards) {
+            add(card);
+        }
+        return !cards.isEmpty();
+    }
+
+    @Override
+    public void add(int index, Card card) {
+        if (index == size) {
+            add(card);
+            return;
+        }
+        checkIndex(index);
+        int position = findChunk(index);
+        Chunk chunk = chunks[position];
+        int offset = index - chunkStarts[position];
+        if (chunk.size == CHUNK_CAPACITY) {
+            split(chunk);
+            if (offset > chunk.size) {
+                offset -= chunk.size;
+                chunk = chunks[position + 1];
+            }
+        }
+        chunk.insert(offset, card);
+        chunkIndex.put(card, chunk);
+        size++;
+        validStarts = Math.min(validStarts, chunk.position + 1);
+        modCount++;
+    }
+
+    @Override
+    public Card remove(int index) {
+        checkIndex(index);
+        int position = findChunk(index);
+        Chunk chunk = chunks[position];
+        Card card = chunk.cards[index - chunkStarts[position]];
+        chunkIndex.remove(card);
+        removeFromChunk(chunk, index - chunkStarts[position]);
+        return card;
+    }
+
+    @Override
+    public boolean remove(Object object) {
+        Chunk chunk = chunkIndex.remove(object);
+        if (chunk == null) {
+            return false;
+        }
+        removeFromChunk(chunk, chunk.indexOf(object));
+        return true;
+    }
+
+    @Override
+    public int indexOf(Object object) {
+        Chunk chunk = chunkIndex.get(object);
+        if (chunk == null) {
+            return -1;
+        }
+        updateStarts();
+        return chunkStarts[chunk.position] + chunk.indexOf(object);
+    }
+
+    @Override
+    public int lastIndexOf(Object object) {
+        return indexOf(object);
+    }
+
+    @Override
+    public boolean contains(Object object) {
+        return chunkIndex.containsKey(object);
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(chunks, 0, numberOfChunks, null);
+        chunkIndex.clear();
+        numberOfChunks = 0;
+        validStarts = 0;
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T[] toArray(T[] array) {
+        if (array.length < size) {
+            array = Arrays.copyOf(array, size);
+        }
+        int index = 0;
+        for (int i = 0; i < numberOfChunks; i++) {
+            System.arraycopy(chunks[i].cards, 0, array, index, chunks[i].size);
+            index += chunks[i].size;
+        }
+        if (array.length > size) {
+            array[size] = null;
+        }
+        return array;
+    }
+
+    @Override
+    public Iterator<Card> iterator() {
+        return new Itr();
+    }
+
+    private void removeFromChunk(Chunk chunk, int offset) {
+        chunk.remove(offset);
+        size--;
+        if (chunk.size == 0) {
+            removeChunk(chunk.position);
+        } else if (chunk.size < MERGE_THRESHOLD && chunk.position + 1 < numberOfChunks
+                && chunk.size + chunks[chunk.position + 1].size <= CHUNK_CAPACITY / 2) {
+            merge(chunk, chunks[chunk.position + 1]);
+        }
+        validStarts = Math.min(validStarts, chunk.position + 1);
+        modCount++;
+    }
+
+    /**
+     * moves the second half of a full chunk into a new chunk behind it
+     */
+    private void split(Chunk chunk) {
+        int half = chunk.size / 2;
+        Chunk newChunk = insertChunk(chunk.position + 1, CHUNK_CAPACITY);
+        System.arraycopy(chunk.cards, half, newChunk.cards, 0, chunk.size - half);
+        Arrays.fill(chunk.cards, half, chunk.size, null);
+        newChunk.size = chunk.size - half;
+        chunk.size = half;
+        for (int i = 0; i < newChunk.size; i++) {
+            chunkIndex.put(newChunk.cards[i], newChunk);
+        }
+    }
+
+    /**
+     * moves all cards of the next chunk into a chunk
+     */
+    private void merge(Chunk chunk, Chunk nextChunk) {
+        for (int i = 0; i < nextChunk.size; i++) {
+            chunk.insert(chunk.size, nextChunk.cards[i]);
+            chunkIndex.put(nextChunk.cards[i], chunk);
+        }
+        removeChunk(nextChunk.position);
+    }
+
+    private Chunk insertChunk(int position, int capacity) {
+        if (numberOfChunks == chunks.length) {
+            int newLength = chunks.length + (chunks.length >> 1) + 1;
+            chunks = Arrays.copyOf(chunks, newLength);
+            chunkStarts = Arrays.copyOf(chunkStarts, newLength);
+        }
+        System.arraycopy(chunks, position, chunks, position + 1, numberOfChunks - position);
+        Chunk chunk = new Chunk(capacity);
+        chunks[position] = chunk;
+        numberOfChunks++;
+        for (int i = position; i < numberOfChunks; i++) {
+            chunks[i].position = i;
+        }
+        validStarts = Math.min(validStarts, position);
+        return chunk;
+    }
+
+    private void removeChunk(int position) {
+        System.arraycopy(chunks, position + 1, chunks, position, numberOfChunks - position - 1);
+        numberOfChunks--;
+        chunks[numberOfChunks] = null;
+        for (int i = position; i < numberOfChunks; i++) {
+            chunks[i].position = i;
+        }
+        validStarts = Math.min(validStarts, position);
+    }
+
+    private void updateStarts() {
+        if (validStarts >= numberOfChunks) {
+            return;
+        }
+        int start = validStarts == 0
+                ? 0 : chunkStarts[validStarts - 1] + chunks[validStarts - 1].size;
+        for (int i = validStarts; i < numberOfChunks; i++) {
+            chunkStarts[i] = start;
+            start += chunks[i].size;
+        }
+        validStarts = numberOfChunks;
+    }
+
+    /**
+     * returns the position of the chunk that holds the card at an index
+     */
+    private int findChunk(int index) {
+        updateStarts();
+        int low = 0;
+        int high = numberOfChunks - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (chunkStarts[middle] <= index) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    /**
+     * a part of the list
+     */
+    private static class Chunk {
+
+        private Card[] cards;
+        private int size;
+        // the position of the chunk in the list of chunks
+        private int position;
+
+        Chunk(int capacity) {
+            cards = new Card[capacity];
+        }
+
+        void insert(int offset, Card card) {
+            if (size == cards.length) {
+                cards = Arrays.copyOf(cards, Math.min(CHUNK_CAPACITY, size * 2));
+            }
+            System.arraycopy(cards, offset, cards, offset + 1, size - offset);
+            cards[offset] = card;
+            size++;
+        }
+
+        void remove(int offset) {
+            System.arraycopy(cards, offset + 1, cards, offset, size - offset - 1);
+            cards[--size] = null;
+        }
+
+        int indexOf(Object card) {
+            for (int i = 0; i < size; i++) {
+                if (cards[i] == card) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * iterates chunk by chunk
+     */
+    private class Itr implements Iterator<Card> {
+
+        // the index of the next card
+        private int cursor;
+        // the chunk and the offset of the next card, null if it must be
+        // looked up again
+        private Chunk chunk;
+        private int offset;
+        private boolean canRemove;
+        private int expectedModCount = modCount;
+
+        public boolean hasNext() {
+            return cursor < size;
+        }
+
+        public Card next() {
+            checkForComodification();
+            if (cursor >= size) {
+                throw new NoSuchElementException();
+            }
+            if (chunk == null) {
+                int position = findChunk(cursor);
+                chunk = chunks[position];
+                offset = cursor - chunkStarts[position];
+            } else if (offset == chunk.size) {
+                chunk = chunks[chunk.position + 1];
+                offset = 0;
+            }
+            cursor++;
+            canRemove = true;
+            return chunk.cards[offset++];
+        }
+
+        public void remove() {
+            if (!canRemove) {
+                throw new IllegalStateException();
+            }
+            checkForComodification();
+            Card card = chunk.cards[offset - 1];
+            chunkIndex.remove(card);
+            removeFromChunk(chunk, offset - 1);
+            cursor--;
+            // the chunk may have been merged or removed
+            chunk = null;
+            canRemove = false;
+            expectedModCount = modCount;
+        }
+
+        private void checkForComodification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.daniel.mobilepauker2.model.pauker_native;
+
+import android.util.LongSparseArray;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * an inverted trigram index over the texts of the cards of a lesson
+ * <p>
+ * For every sequence of three characters the index knows the ids of the
+ * cards that contain it on one of their sides. A query only has to check the
+ * cards that contain all trigrams of the search pattern instead of every
+ * card. Searching ignores case and accents.
+ * <p>
+ * The index is not thread safe.
+ */
+public class CardSearchIndex {
+
+    /**
+     * the number of characters of an indexed sequence, shorter patterns can
+     * not be searched with the index
+     */
+    public static final int GRAM_LENGTH = 3;
+
+    // card id -> normalized texts of the front side and the reverse side
+    private final LongSparseArray<String[]> texts;
+    // trigram -> ids of the cards that contain it
+    private final Map<Long, Postings> postings;
+
+    /**
+     * creates a new empty CardSearchIndex
+     */
+    public CardSearchIndex() {
+        texts = new LongSparseArray<>();
+        postings = new HashMap<>();
+    }
+
+    /**
+     * returns the number of indexed cards
+     * @return the number of indexed cards
+     */
+    public int getNumberOfCards() {
+        return texts.size();
+    }
+
+    /**
+     * adds a card to the index
+     * @param card the card
+     */
+    public void addCard(Card card) {
+        removeCard(card.getId());
+        addTexts(card.getId(), card.getFrontSide().getSearchText(),
+                card.getReverseSide().getSearchText());
+    }
+
+    /**
+     * adds a card to the index
+     * @param id          the id of the card
+     * @param frontText   the text of the front side
+     * @param reverseText the text of the reverse side
+     */
+    public void addCard(long id, String frontText, String reverseText) {
+        removeCard(id);
+        addTexts(id, CardSide.normalize(frontText), CardSide.normalize(reverseText));
+    }
+
+    private void addTexts(long id, String frontText, String reverseText) {
+        String[] cardTexts = new String[]{frontText, reverseText};
+        texts.put(id, cardTexts);
+        for (String text : cardTexts) {
+            for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+                Long gram = gram(text, i);
+                Postings cardIds = postings.get(gram);
+                if (cardIds == null) {
+                    cardIds = new Postings();
+                    postings.put(gram, cardIds);
+                }
+                cardIds.add(id);
+            }
+        }
+    }
+
+    /**
+     * updates the index after the texts of a card were changed
+     * @param card the card
+     */
+    public void updateCard(Card card) {
+        addCard(card);
+    }
+
+    /**
+     * removes a card from the index
+     * @param id the id of the card
+     */
+    public void removeCard(long id) {
+        String[] cardTexts = texts.get(id);
+        if (cardTexts == null) {
+            return;
+        }
+        texts.remove(id);
+        for (String text : cardTexts) {
+            for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+                Long gram = gram(text, i);
+                Postings cardIds = postings.get(gram);
+                if (cardIds != null && cardIds.remove(id) && cardIds.size == 0) {
+                    postings.remove(gram);
+                }
+            }
+        }
+    }
+
+    /**
+     * searches for cards that contain a pattern
+     * @param pattern  the search pattern
+     * @param cardSide the side to search at
+     * @return the ids of all matching cards in ascending order or
+     * <CODE>null</CODE>, if the pattern is too short to be searched with the
+     * index
+     */
+    public long[] search(String pattern, Card.Element cardSide) {
+        String foldedPattern = CardSide.normalize(pattern);
+        if (foldedPattern.length() < GRAM_LENGTH) {
+            return null;
+        }
+
+        // collect the cards of every trigram of the pattern, rarest first
+        Postings[] patternPostings = new Postings[foldedPattern.length() - GRAM_LENGTH + 1];
+        for (int i = 0; i < patternPostings.length; i++) {
+            Postings cardIds = postings.get(gram(foldedPattern, i));
+            if (cardIds == null) {
+                return new long[0];
+            }
+            cardIds.sort();
+            patternPostings[i] = cardIds;
+        }
+        Arrays.sort(patternPostings, new Comparator<Postings>() {
+
+            public int compare(Postings postings1, Postings postings2) {
+                return postings1.size < postings2.size ? -1
+                        : postings1.size == postings2.size ? 0 : 1;
+            }
+        });
+
+        // only cards that contain all trigrams must be checked
+        Postings candidates = patternPostings[0];
+        long[] matches = new long[candidates.size];
+        int numberOfMatches = 0;
+        candidates:
+        for (int i = 0; i < candidates.size; i++) {
+            long id = candidates.ids[i];
+            for (int j = 1; j < patternPostings.length; j++) {
+                if (!patternPostings[j].contains(id)) {
+                    continue candidates;
+                }
+            }
+            if (matches(texts.get(id), foldedPattern, cardSide)) {
+                matches[numberOfMatches++] = id;
+            }
+        }
+        return Arrays.copyOf(matches, numberOfMatches);
+    }
+
+    private static boolean matches(String[] cardTexts, String foldedPattern, Card.Element cardSide) {
+        switch (cardSide) {
+            case FRONT_SIDE:
+                return cardTexts[0].contains(foldedPattern);
+            case REVERSE_SIDE:
+                return cardTexts[1].contains(foldedPattern);
+            default:
+                return cardTexts[0].contains(foldedPattern)
+                        || cardTexts[1].contains(foldedPattern);
+        }
+    }
+
+    private static Long gram(String text, int index) {
+        return ((long) text.charAt(index) << 32)
+                | ((long) text.charAt(index + 1) << 16)
+                | text.charAt(index + 2);
+    }
+
+    /**
+     * the ids of the cards that contain a trigram
+     */
+    private static class Postings {
+
+        private long[] ids = new long[4];
+        private int size;
+        private boolean sorted = true;
+
+        void add(long id) {
+            // a card adds all its trigrams at once
+            if (size > 0 && ids[size - 1] == id) {
+                return;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            if (size > 0 && ids[size - 1] > id) {
+                sorted = false;
+            }
+            ids[size++] = id;
+        }
+
+        boolean remove(long id) {
+            sort();
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+            size--;
+            return true;
+        }
+
+        boolean contains(long id) {
+            return Arrays.binarySearch(ids, 0, size, id) >= 0;
+        }
+
+        void sort() {
+            if (!sorted) {
+                Arrays.sort(ids, 0, size);
+                // a card may have been added twice between other cards
+                int unique = 0;
+                for (int i = 0; i < size; i++) {
+                    if (unique == 0 || ids[unique - 1] != ids[i]) {
+                        ids[unique++] = ids[i];
+                    }
+                }
+                size = unique;
+                sorted = true;
+            }
+        }
+    }
+}
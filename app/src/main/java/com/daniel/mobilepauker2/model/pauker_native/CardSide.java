@@ -4,13 +4,18 @@ import android.support.annotation.NonNull;
 
 import com.daniel.mobilepauker2.utils.Constants;
 
-import java.util.LinkedList;
-import java.util.List;
+import java.text.Normalizer;
+import java.util.Arrays;
 
 
 public class CardSide implements Comparable<CardSide> {
     // content
     private String text;
+    // the text without accents and in lower case, computed when it is needed
+    private String searchText;
+    // the index in the text for every index in the search text, null if the
+    // indices are the same
+    private int[] searchTextIndices;
     // style
     private Font font;
     private ComponentOrientation orientation;
@@ -19,8 +24,6 @@ public class CardSide implements Comparable<CardSide> {
     private boolean learned;
     private int longTermBatchNumber;
     private long learnedTimestamp;
-    // support for search result caching (speeds up batch rendering)
-    private final List<SearchHit> searchHits;
 
     /**
      * creates a new CardSide
@@ -35,7 +38,6 @@ public class CardSide implements Comparable<CardSide> {
      */
     private CardSide(String text) {
         this.text = text;
-        searchHits = new LinkedList<>();
     }
 
     public int compareTo(@NonNull CardSide otherCardSide) {
@@ -97,6 +99,28 @@ public class CardSide implements Comparable<CardSide> {
         return hash;
     }
 
+    /**
+     * returns a copy of this card side that does not share any changeable state with it
+     * @return a copy of this card side
+     */
+    CardSide copy() {
+        CardSide copy = new CardSide(text);
+        copy.searchText = searchText;
+        copy.searchTextIndices = searchTextIndices;
+        if (font != null) {
+            copy.font = new Font(font.getBackgroundColor(), font.isBold(), font.getFamily(),
+                    font.getTextColor(), font.isItalic(), font.getTextSize());
+        }
+        if (orientation != null) {
+            copy.orientation = new ComponentOrientation(orientation.getOrientation());
+        }
+        copy.repeatByTyping = repeatByTyping;
+        copy.learned = learned;
+        copy.longTermBatchNumber = longTermBatchNumber;
+        copy.learnedTimestamp = learnedTimestamp;
+        return copy;
+    }
+
     /**
      * returns the cardside text
      * @return the cardside text
@@ -111,6 +135,187 @@ public class CardSide implements Comparable<CardSide> {
      */
     public void setText(String text) {
         this.text = text;
+        searchText = null;
+        searchTextIndices = null;
+    }
+
+    /**
+     * returns the cardside text for searching without regard to case and
+     * accents
+     * <p>
+     * Accents are removed from latin, greek and cyrillic letters only, so the
+     * search text may be shorter than the text. Use
+     * {@link #getTextIndex(int)} to find a match in the text.
+     * @return the normalized cardside text
+     */
+    public String getSearchText() {
+        if (searchText == null) {
+            if (text == null) {
+                searchText = "";
+            } else if (isAscii(text)) {
+                searchText = lowerCaseAscii(text);
+            } else {
+                searchText = normalize(text, this);
+            }
+        }
+        return searchText;
+    }
+
+    /**
+     * returns the index in the text for an index in the search text
+     * @param searchTextIndex the index in the text returned by
+     *                        {@link #getSearchText()}
+     * @return the index in the text returned by {@link #getText()}
+     */
+    public int getTextIndex(int searchTextIndex) {
+        getSearchText();
+        return searchTextIndices == null
+                ? searchTextIndex : searchTextIndices[searchTextIndex];
+    }
+
+    /**
+     * Normalizes a text for searching without regard to case and accents.
+     * The text is decomposed once (NFD). Latin, greek and cyrillic letters
+     * lose their accents (non spacing marks), all other scripts (e.g. hangul
+     * or kana) keep their characters. Everything is in lower case.
+     * @param text the text
+     * @return the normalized text, the text itself if it is already
+     * normalized
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        if (isAscii(text)) {
+            return lowerCaseAscii(text);
+        }
+        return normalize(text, null);
+    }
+
+    /**
+     * normalizes a text that contains non ASCII characters
+     * @param text     the text
+     * @param cardSide the card side that gets the index in the text for every
+     *                 index in the normalized text or <CODE>null</CODE>
+     * @return the normalized text
+     */
+    private static String normalize(String text, CardSide cardSide) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder normalized = new StringBuilder(text.length());
+        // a cluster is copied from the text or from the decomposed text
+        int[] indices = new int[text.length() + decomposed.length()];
+        int length = text.length();
+        int decomposedLength = decomposed.length();
+        int index = 0;
+        int decomposedIndex = 0;
+        while (index < length) {
+            // a base character with its marks in the text ...
+            int clusterEnd = skipMarks(text, index + Character.charCount(text.codePointAt(index)));
+            if (decomposedIndex >= decomposedLength) {
+                // can not happen with canonical decompositions
+                appendLowerCase(normalized, indices, text, index, length);
+                break;
+            }
+            // ... and the same characters in the decomposed text
+            int base = decomposed.codePointAt(decomposedIndex);
+            int decomposedBaseEnd = decomposedIndex + Character.charCount(base);
+            char c = text.charAt(index);
+            if (c >= HANGUL_SYLLABLES_FIRST && c <= HANGUL_SYLLABLES_LAST) {
+                // a hangul syllable decomposes into two or three jamo
+                decomposedBaseEnd = decomposedIndex
+                        + ((c - HANGUL_SYLLABLES_FIRST) % HANGUL_TRAILING_JAMO == 0 ? 2 : 3);
+            }
+            int decomposedClusterEnd = skipMarks(decomposed, decomposedBaseEnd);
+
+            if (isFoldedScript(base)) {
+                int clusterStart = normalized.length();
+                normalized.appendCodePoint(Character.toLowerCase(base));
+                for (int i = decomposedBaseEnd; i < decomposedClusterEnd; i++) {
+                    char mark = decomposed.charAt(i);
+                    if (Character.getType(mark) != Character.NON_SPACING_MARK) {
+                        normalized.append(mark);
+                    }
+                }
+                for (int i = clusterStart; i < normalized.length(); i++) {
+                    indices[i] = Math.min(index + i - clusterStart, clusterEnd - 1);
+                }
+            } else {
+                appendLowerCase(normalized, indices, text, index, clusterEnd);
+            }
+            index = clusterEnd;
+            decomposedIndex = decomposedClusterEnd;
+        }
+        if (cardSide != null) {
+            cardSide.searchTextIndices = hasSameIndices(indices, normalized.length(), text.length())
+                    ? null : Arrays.copyOf(indices, normalized.length());
+        }
+        return normalized.toString();
+    }
+
+    private static final char HANGUL_SYLLABLES_FIRST = '\uAC00';
+    private static final char HANGUL_SYLLABLES_LAST = '\uD7A3';
+    private static final int HANGUL_TRAILING_JAMO = 28;
+
+    private static boolean hasSameIndices(int[] indices, int length, int textLength) {
+        if (length != textLength) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (indices[i] != i) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isFoldedScript(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.LATIN
+                || script == Character.UnicodeScript.GREEK
+                || script == Character.UnicodeScript.CYRILLIC;
+    }
+
+    private static int skipMarks(String text, int index) {
+        while (index < text.length()) {
+            int type = Character.getType(text.codePointAt(index));
+            if (type != Character.NON_SPACING_MARK && type != Character.ENCLOSING_MARK
+                    && type != Character.COMBINING_SPACING_MARK) {
+                break;
+            }
+            index += Character.charCount(text.codePointAt(index));
+        }
+        return index;
+    }
+
+    private static void appendLowerCase(StringBuilder normalized, int[] indices,
+                                        String text, int from, int to) {
+        for (int i = from; i < to; i++) {
+            indices[normalized.length()] = i;
+            normalized.append(Character.toLowerCase(text.charAt(i)));
+        }
+    }
+
+    private static boolean isAscii(String text) {
+        for (int i = 0, length = text.length(); i < length; i++) {
+            if (text.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String lowerCaseAscii(String text) {
+        char[] lowerCase = null;
+        for (int i = 0, length = text.length(); i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                if (lowerCase == null) {
+                    lowerCase = text.toCharArray();
+                }
+                lowerCase[i] = (char) (c + ('a' - 'A'));
+            }
+        }
+        return lowerCase == null ? text : new String(lowerCase);
     }
 
     /**
@@ -187,7 +392,7 @@ public class CardSide implements Comparable<CardSide> {
      * @return <CODE>true</CODE>, if the cardside should be repeated by typing instead of
      * memorizing, <CODE>false</CODE> otherwise
      */
-    boolean isRepeatedByTyping() {
+    public boolean isRepeatedByTyping() {
         return repeatByTyping;
     }
 
@@ -200,48 +405,6 @@ public class CardSide implements Comparable<CardSide> {
         this.repeatByTyping = repeatByTyping;
     }
 
-    /**
-     * searches for a string pattern at the card side
-     * @param card      the card of this card side
-     * @param cardSide  the side of this card side
-     * @param pattern   the search pattern
-     * @param matchCase if we must match the case
-     * @return a list with search match indices
-     */
-    public List<SearchHit> search(Card card, Card.Element cardSide,
-                                  String pattern, boolean matchCase) {
-        searchHits.clear();
-        if (pattern == null) {
-            return searchHits;
-        }
-        String searchText = text;
-        String searchPattern = pattern;
-        if (!matchCase) {
-            searchText = text.toLowerCase();
-            searchPattern = pattern.toLowerCase();
-        }
-        for (int index = searchText.indexOf(searchPattern); index != -1; ) {
-            searchHits.add(new SearchHit(card, cardSide, index));
-            index = searchText.indexOf(searchPattern, index + 1);
-        }
-        return searchHits;
-    }
-
-    /**
-     * returns a List of search match indices
-     * @return a List of search match indices
-     */
-    List<SearchHit> getSearchHits() {
-        return searchHits;
-    }
-
-    /**
-     * cancels the search process
-     */
-    void cancelSearch() {
-        searchHits.clear();
-    }
-
     //    /**
     //     * returns the size of the font that is used for this card side
     //     * @return the size of the font that is used for this card side
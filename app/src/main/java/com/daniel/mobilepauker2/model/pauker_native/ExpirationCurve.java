@@ -0,0 +1,95 @@
+package com.daniel.mobilepauker2.model.pauker_native;
+
+import java.util.Arrays;
+
+/**
+ * the expiration times of the long term batches
+ * <p>
+ * The expiration time of a batch number is computed once and then looked up
+ * in a table that grows with the highest batch number asked for. The curve
+ * that is used for new long term batches can be replaced with
+ * {@link #setCurrent(ExpirationCurve)} before a lesson is loaded.
+ */
+public abstract class ExpirationCurve {
+
+    private static final long ONE_DAY = 24 * 60 * 60 * 1000;
+
+    /**
+     * the curve of Pauker: cards of batch <CODE>n</CODE> expire after
+     * <CODE>e^n</CODE> days
+     */
+    public static final ExpirationCurve EXPONENTIAL = exponential(ONE_DAY, Math.E);
+
+    private static volatile ExpirationCurve current = EXPONENTIAL;
+
+    // the expiration time of every batch number computed so far
+    private volatile long[] expirationTimes = new long[0];
+
+    /**
+     * returns a curve where cards of batch <CODE>n</CODE> expire after
+     * <CODE>unit * base^n</CODE>
+     * @param unit the expiration time of the first batch in milliseconds
+     * @param base the factor between two batches
+     * @return the curve
+     */
+    public static ExpirationCurve exponential(final long unit, final double base) {
+        return new ExpirationCurve() {
+
+            @Override
+            protected long computeExpirationTime(int batchNumber) {
+                return (long) (unit * Math.pow(base, batchNumber));
+            }
+        };
+    }
+
+    /**
+     * returns the curve that is used for new long term batches
+     * @return the curve that is used for new long term batches
+     */
+    public static ExpirationCurve getCurrent() {
+        return current;
+    }
+
+    /**
+     * sets the curve that is used for new long term batches, existing
+     * batches keep their expiration time
+     * @param curve the new curve
+     */
+    public static void setCurrent(ExpirationCurve curve) {
+        current = curve;
+    }
+
+    /**
+     * returns the expiration time of a long term batch
+     * @param batchNumber the number of the long term batch
+     * @return the time in milliseconds after which a card of the batch expires
+     */
+    public long getExpirationTime(int batchNumber) {
+        long[] times = expirationTimes;
+        if (batchNumber < times.length) {
+            return times[batchNumber];
+        }
+        return grow(batchNumber);
+    }
+
+    /**
+     * computes the expiration time of a long term batch, called only once per
+     * batch number
+     * @param batchNumber the number of the long term batch
+     * @return the time in milliseconds after which a card of the batch expires
+     */
+    protected abstract long computeExpirationTime(int batchNumber);
+
+    private synchronized long grow(int batchNumber) {
+        long[] times = expirationTimes;
+        if (batchNumber >= times.length) {
+            long[] grownTimes = Arrays.copyOf(times, Math.max(batchNumber + 1, times.length * 2));
+            for (int i = times.length; i < grownTimes.length; i++) {
+                grownTimes[i] = computeExpirationTime(i);
+            }
+            expirationTimes = grownTimes;
+            times = grownTimes;
+        }
+        return times[batchNumber];
+    }
+}
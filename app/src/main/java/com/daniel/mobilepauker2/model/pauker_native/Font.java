@@ -26,6 +26,15 @@ public class Font {
         mFamily = family;
     }
 
+    public Font(int background, boolean bold, String family, int foreground, boolean italic, int size) {
+        mBold = bold;
+        mItalic = italic;
+        mBackground = background;
+        mTextColor = foreground;
+        mSize = size;
+        mFamily = family;
+    }
+
     private int parseInt(String value) {
         try {
             return Integer.parseInt(value);
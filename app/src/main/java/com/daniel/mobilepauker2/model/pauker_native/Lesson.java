@@ -6,12 +6,16 @@ package com.daniel.mobilepauker2.model.pauker_native;
  * Created on 5. Juni 2001, 22:14
  */
 
+import android.util.LongSparseArray;
+
 import com.daniel.mobilepauker2.utils.Log;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -23,6 +27,8 @@ public class Lesson {
 
     private static final Logger LOGGER =
             Logger.getLogger(Lesson.class.getName());
+    // lesson-wide operations on more cards are split into parallel tasks
+    private static final int PARALLEL_THRESHOLD = 4096;
     private String description;
     // all card batches
     private final SummaryBatch summaryBatch;
@@ -30,6 +36,9 @@ public class Lesson {
     private final List<Card> ultraShortTermList;
     private final List<Card> shortTermList;
     private final List<LongTermBatch> longTermBatches;
+    // all cards of this lesson by their id
+    private final LongSparseArray<Card> cardsById;
+    private long nextCardId = Card.NO_ID + 1;
     private Random random;
 
     /**
@@ -38,9 +47,10 @@ public class Lesson {
     public Lesson() {
         description = "";
         unlearnedBatch = new Batch(null);
-        ultraShortTermList = new ArrayList<>();
-        shortTermList = new ArrayList<>();
+        ultraShortTermList = new CardList();
+        shortTermList = new CardList();
         longTermBatches = new ArrayList<>();
+        cardsById = new LongSparseArray<>();
         // !!! create summaryBatch at the end, because it uses the reference to
         // this lesson and expects it to be completely initialized !!!
         summaryBatch = new SummaryBatch(this);
@@ -69,10 +79,68 @@ public class Lesson {
      * @param card the new card
      */
     public void addCard(Card card) {
+        registerCard(card);
         summaryBatch.addCard(card);
         unlearnedBatch.addCard(card);
     }
 
+    /**
+     * Registers a card that was put into a batch of this lesson. The card
+     * gets a new id, if it has none yet or if its id is already used by
+     * another card of this lesson.
+     * @param card the card
+     */
+    public void registerCard(Card card) {
+        long id = card.getId();
+        if (id == Card.NO_ID) {
+            id = nextCardId++;
+            card.setId(id);
+            // ids are handed out in ascending order
+            cardsById.append(id, card);
+            return;
+        }
+
+        Card registeredCard = cardsById.get(id);
+        if (registeredCard != null && registeredCard != card) {
+            id = nextCardId++;
+            card.setId(id);
+        }
+        nextCardId = Math.max(nextCardId, id + 1);
+        cardsById.put(id, card);
+    }
+
+    /**
+     * Unregisters a card that was deleted from this lesson.
+     * @param card the card
+     */
+    public void unregisterCard(Card card) {
+        long id = card.getId();
+        if (cardsById.get(id) == card) {
+            cardsById.remove(id);
+        }
+    }
+
+    /**
+     * returns the card with a certain id
+     * @param id the id of the card
+     * @return the card or <CODE>null</CODE>, if this lesson has no card with
+     * this id
+     */
+    public Card getCardById(long id) {
+        return cardsById.get(id);
+    }
+
+    /**
+     * Takes a snapshot of the part of this lesson that is stored in a lesson file, i.e. the
+     * description, the unlearned batch and the long term batches. Cards in the ultra short term
+     * and short term memory are stored as unlearned cards. Only references and the
+     * learning state are copied, see {@link LessonSnapshot}.
+     * @return the snapshot of this lesson
+     */
+    public LessonSnapshot snapshot() {
+        return new LessonSnapshot(this);
+    }
+
     /**
      * returns the summary batch of this lesson
      * @return the summary batch of this lesson
@@ -155,6 +223,20 @@ public class Lesson {
         return numberOfCards;
     }
 
+    /**
+     * returns the number of cards in the unlearned batch and the long term
+     * batches, i.e. the size of {@link #getCards()} without building the list
+     * @return the number of cards in the unlearned batch and the long term
+     * batches
+     */
+    public int getNumberOfBatchCards() {
+        int numberOfCards = unlearnedBatch.getNumberOfCards();
+        for (LongTermBatch longTermBatch : longTermBatches) {
+            numberOfCards += longTermBatch.getNumberOfCards();
+        }
+        return numberOfCards;
+    }
+
     /**
      * returns a <CODE>List</CODE> of all cards of this lesson
      * @return a <CODE>List</CODE> of all cards of this lesson
@@ -222,6 +304,19 @@ public class Lesson {
         return expiredCards;
     }
 
+    /**
+     * returns the number of learned (not new or expired) cards
+     * @return the number of learned (not new or expired) cards
+     */
+    public int getNumberOfLearnedCards() {
+        int numberOfLearnedCards = 0;
+        for (LongTermBatch longTermBatch : longTermBatches) {
+            numberOfLearnedCards += longTermBatch.getNumberOfCards()
+                    - longTermBatch.getNumberOfExpiredCards();
+        }
+        return numberOfLearnedCards;
+    }
+
     /**
      * returns a collection of all learned (not new or expired) cards
      * @return a collection of all learned (not new or expired) cards
@@ -246,6 +341,65 @@ public class Lesson {
         }
     }
 
+    private void registerCards(List<Card> cards) {
+        for (Card card : cards) {
+            registerCard(card);
+        }
+    }
+
+    /**
+     * applies an action to every card, in parallel for many cards
+     * <p>
+     * The action must only change the card it is applied to.
+     */
+    private static void forEachCard(List<Card> cards, CardAction action) {
+        Card[] cardArray = cards.toArray(new Card[cards.size()]);
+        if (cardArray.length < PARALLEL_THRESHOLD) {
+            for (Card card : cardArray) {
+                action.apply(card);
+            }
+        } else {
+            ForkJoinPool.commonPool().invoke(new CardTask(cardArray, 0, cardArray.length, action));
+        }
+    }
+
+    private interface CardAction {
+        void apply(Card card);
+    }
+
+    /**
+     * applies a CardAction to a range of cards, splits large ranges
+     */
+    private static class CardTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Card[] cards;
+        private final int from;
+        private final int to;
+        private final CardAction action;
+
+        CardTask(Card[] cards, int from, int to, CardAction action) {
+            this.cards = cards;
+            this.from = from;
+            this.to = to;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    action.apply(cards[i]);
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new CardTask(cards, from, middle, action),
+                        new CardTask(cards, middle, to, action));
+            }
+        }
+    }
+
     /**
      * removes empty longterm batches at the end of this lesson
      */
@@ -264,12 +418,18 @@ public class Lesson {
      * moves all cards of longterm batches back to the unlearned batch
      */
     public void reset() {
+        List<Card> learnedCards = new ArrayList<>();
         for (LongTermBatch longTermBatch : longTermBatches) {
-            for (Card card : longTermBatch.getCards()) {
+            learnedCards.addAll(longTermBatch.getCards());
+        }
+        forEachCard(learnedCards, new CardAction() {
+
+            public void apply(Card card) {
                 card.setLearned(false);
-                unlearnedBatch.addCard(card);
             }
-        }
+        });
+        // the cards are already unlearned, so they are appended at once
+        unlearnedBatch.appendUnlearnedCards(learnedCards);
         longTermBatches.clear();
     }
 
@@ -281,6 +441,7 @@ public class Lesson {
         // merge unlearned cards
         List<Card> otherUnlearnedCards =
                 otherLesson.getUnlearnedBatch().getCards();
+        registerCards(otherUnlearnedCards);
         unlearnedBatch.addCards(otherUnlearnedCards);
         summaryBatch.addCards(otherUnlearnedCards);
 
@@ -301,43 +462,25 @@ public class Lesson {
                 LOGGER.log(Level.FINE, "batch {0} contains {1} cards",
                         new Object[]{i, cards.size()});
             }
+            registerCards(cards);
             batch.addCards(cards);
-            summaryBatch.addCards(otherUnlearnedCards);
+            summaryBatch.addCards(cards);
         }
     }
 
     /**
-     * flips all cards and moves them to their new batches
+     * flips the card sides of all cards
+     * <p>
+     * The learning state belongs to the front side, so every card stays in
+     * its batch and at its index.
      */
     public void flip() {
-        for (Card card : getCards()) {
-            //Daten zwischenspeichern, da immer die Vorderseite abgefragt wird
-            boolean isLearned = card.isLearned();
-            int batchNumber = -1;
-            LongTermBatch longTermBatch = null;
-
-            // remove card
-            if (isLearned) {
-                batchNumber = card.getLongTermBatchNumber();
-                longTermBatch = longTermBatches.get(batchNumber);
-                longTermBatch.removeCard(card);
-            } else {
-                unlearnedBatch.removeCard(card);
-            }
-
-            // flip card
-            card.flip();
+        forEachCard(getCards(), new CardAction() {
 
-            // re-add card
-            if (isLearned) {
-                for (int size = longTermBatches.size(); size < (batchNumber + 1); size++) {
-                    longTermBatches.add(new LongTermBatch(size));
-                }
-                longTermBatch.addCard(card);
-            } else {
-                unlearnedBatch.addCard(card);
+            public void apply(Card card) {
+                card.flip();
             }
-        }
+        });
 
         // clean up
         trim();
@@ -349,28 +492,16 @@ public class Lesson {
      * @return the next expiration time
      */
     public long getNextExpirationTime() {
-        boolean noExpiredCards = true;
+        long nextExpirationDate = Long.MAX_VALUE;
         for (LongTermBatch longTermBatch : longTermBatches) {
             if (longTermBatch.getNumberOfExpiredCards() != 0) {
-                noExpiredCards = false;
-                break;
+                return Long.MAX_VALUE;
             }
-        }
-
-        long nextExpirationDate = Long.MAX_VALUE;
-        if (noExpiredCards) {
-            // look at all learned cards and determine next expiation date
-            Collection<Card> cards = getCards();
-            for (Card card : cards) {
-                if (card.isLearned()) {
-                    long cardExpirationTime = card.getExpirationTime();
-                    if (cardExpirationTime < nextExpirationDate) {
-                        nextExpirationDate = cardExpirationTime;
-                    }
-                }
+            long batchExpirationTime = longTermBatch.getNextExpirationTime();
+            if (batchExpirationTime < nextExpirationDate) {
+                nextExpirationDate = batchExpirationTime;
             }
         }
-
         return nextExpirationDate;
     }
 
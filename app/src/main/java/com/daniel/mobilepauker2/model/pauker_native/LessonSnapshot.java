@@ -0,0 +1,124 @@
+package com.daniel.mobilepauker2.model.pauker_native;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * the state of the part of a lesson that is stored in a lesson file, i.e. the
+ * description, the unlearned batch and the long term batches
+ * <p>
+ * The cards in the ultra short term and short term memory are stored in the
+ * unlearned batch, just like {@code ModelManager.resetLesson()} puts them back
+ * at the end of a session. A snapshot taken during a session therefore does
+ * not lose them.
+ * <p>
+ * Taking a snapshot only copies the references to the cards and the state
+ * that changes while learning or editing (batch membership, learned
+ * timestamps and texts), so it is cheap enough for the main thread. The
+ * copies of the cards are built by {@link #toLesson()}, which may be called
+ * on any thread while the lesson is changed.
+ */
+public class LessonSnapshot {
+
+    private final String description;
+    // the cards in the order they are stored in the lesson file
+    private final Card[] cards;
+    // the number of unlearned cards (including the ultra short term and short
+    // term memory) followed by the number of cards of every long term batch
+    private final int[] batchSizes;
+    private final String[] frontTexts;
+    private final String[] reverseTexts;
+    private final long[] learnedTimestamps;
+    private final boolean[] repeatByTyping;
+
+    /**
+     * takes a snapshot of a lesson
+     * @param lesson the lesson
+     */
+    LessonSnapshot(Lesson lesson) {
+        description = lesson.getDescription();
+        List<LongTermBatch> longTermBatches = lesson.getLongTermBatches();
+        batchSizes = new int[longTermBatches.size() + 1];
+        List<Card> ultraShortTermList = lesson.getUltraShortTermList();
+        List<Card> shortTermList = lesson.getShortTermList();
+        batchSizes[0] = lesson.getUnlearnedBatch().getNumberOfCards()
+                + ultraShortTermList.size() + shortTermList.size();
+        int numberOfCards = batchSizes[0];
+        for (int i = 0; i < longTermBatches.size(); i++) {
+            batchSizes[i + 1] = longTermBatches.get(i).getNumberOfCards();
+            numberOfCards += batchSizes[i + 1];
+        }
+
+        cards = new Card[numberOfCards];
+        int index = 0;
+        for (Card card : lesson.getUnlearnedBatch().getCards()) {
+            cards[index++] = card;
+        }
+        for (Card card : ultraShortTermList) {
+            cards[index++] = card;
+        }
+        for (Card card : shortTermList) {
+            cards[index++] = card;
+        }
+        for (LongTermBatch longTermBatch : longTermBatches) {
+            for (Card card : longTermBatch.getCards()) {
+                cards[index++] = card;
+            }
+        }
+
+        frontTexts = new String[numberOfCards];
+        reverseTexts = new String[numberOfCards];
+        learnedTimestamps = new long[numberOfCards];
+        repeatByTyping = new boolean[numberOfCards];
+        for (int i = 0; i < numberOfCards; i++) {
+            Card card = cards[i];
+            frontTexts[i] = card.getFrontSide().getText();
+            reverseTexts[i] = card.getReverseSide().getText();
+            learnedTimestamps[i] = card.getLearnedTimestamp();
+            repeatByTyping[i] = card.isRepeatedByTyping();
+        }
+    }
+
+    /**
+     * returns the cards in the order they are stored in the lesson file
+     * @return the cards of the unlearned batch, the ultra short term memory
+     * and the short term memory followed by the cards of the long term
+     * batches
+     */
+    public List<Card> getCards() {
+        return Arrays.asList(cards);
+    }
+
+    /**
+     * Builds a copy of the lesson as it was when the snapshot was taken. The
+     * copy does not share any cards with the lesson, so it can be written
+     * while the lesson is changed.
+     * @return the copy of the lesson
+     */
+    public Lesson toLesson() {
+        Lesson lesson = new Lesson();
+        lesson.setDescription(description);
+        int index = 0;
+        for (int i = 0; i < batchSizes.length; i++) {
+            Batch batch;
+            if (i == 0) {
+                batch = lesson.getUnlearnedBatch();
+            } else {
+                LongTermBatch longTermBatch = lesson.addLongTermBatch();
+                // the expiration index is sorted once when it is needed
+                longTermBatch.refreshExpiration();
+                batch = longTermBatch;
+            }
+            for (int j = 0; j < batchSizes[i]; j++, index++) {
+                Card copy = cards[index].copy();
+                copy.getFrontSide().setText(frontTexts[index]);
+                copy.getReverseSide().setText(reverseTexts[index]);
+                copy.getFrontSide().setLearned(i > 0);
+                copy.setLearnedTimeStamp(learnedTimestamps[index]);
+                copy.setRepeatByTyping(repeatByTyping[index]);
+                batch.addCard(copy);
+            }
+        }
+        return lesson;
+    }
+}
@@ -9,7 +9,9 @@ package com.daniel.mobilepauker2.model.pauker_native;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Iterator;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 
 /**
  * a long term batch
@@ -22,9 +24,31 @@ public class LongTermBatch extends Batch {
     private static final long ONE_HOUR = ONE_MINUTE * 60;
     private static final long ONE_DAY = ONE_HOUR * 24;
     private static final long EXPIRATION_UNIT = ONE_DAY;
+    private static final Comparator<Card> learnedTimestampComparator =
+            new Comparator<Card>() {
+
+                public int compare(Card card1, Card card2) {
+                    long learnedTime1 = card1.getLearnedTimestamp();
+                    long learnedTime2 = card2.getLearnedTimestamp();
+                    if (learnedTime1 < learnedTime2) {
+                        return -1;
+                    } else if (learnedTime1 > learnedTime2) {
+                        return 1;
+                    }
+                    return 0;
+                }
+            };
     private final int batchNumber;
-    private final Collection<Card> expiredCards;
     private final long expirationTime;
+    // all cards of this batch sorted by their learned timestamp
+    // (all cards of a batch share the same expiration time, so this is also
+    // the order in which the cards expire)
+    private final List<Card> expirationIndex;
+    // the index of the first card in the expiration index, the slots before
+    // belong to cards that were removed and are dropped lazily, so removing
+    // the oldest card does not move the other cards
+    private int expirationStart;
+    private boolean expirationIndexValid;
 
     /**
      * Creates a new instance of LongTermBatch
@@ -33,9 +57,9 @@ public class LongTermBatch extends Batch {
     public LongTermBatch(int batchNumber) {
         super(null);
         this.batchNumber = batchNumber;
-        double factor = Math.pow(Math.E, batchNumber);
-        expirationTime = (long) (EXPIRATION_UNIT * factor);
-        expiredCards = new ArrayList<>();
+        expirationTime = ExpirationCurve.getCurrent().getExpirationTime(batchNumber);
+        expirationIndex = new ArrayList<>();
+        expirationIndexValid = true;
     }
 
     /**
@@ -56,6 +80,9 @@ public class LongTermBatch extends Batch {
 
     /**
      * adds a card to this batch
+     * <p>
+     * The learned timestamp of the card must already be set, otherwise the
+     * expiration index has to be refreshed with {@link #refreshExpiration()}.
      * @param card the new card
      */
     @Override
@@ -63,15 +90,82 @@ public class LongTermBatch extends Batch {
         card.setLongTermBatchNumber(batchNumber);
         card.setExpirationTime(expirationTime);
         cards.add(card);
+        if (expirationIndexValid) {
+            long learnedTime = card.getLearnedTimestamp();
+            int index = upperBound(learnedTime);
+            if (index == expirationStart && expirationStart > 0) {
+                expirationIndex.set(--expirationStart, card);
+            } else {
+                expirationIndex.add(index, card);
+            }
+        }
     }
 
     /**
-     * returns a collection of all expired cards of this batch
+     * adds cards to the batch
+     * <p>
+     * The expiration index is rebuilt once with the next query instead of
+     * inserting every card.
+     * @param cards the new cards
+     */
+    @Override
+    public void addCards(List<Card> cards) {
+        for (Card card : cards) {
+            card.setLongTermBatchNumber(batchNumber);
+            card.setExpirationTime(expirationTime);
+        }
+        this.cards.addAll(cards);
+        if (!cards.isEmpty()) {
+            expirationIndexValid = false;
+        }
+    }
+
+    /**
+     * removes a card from the batch
+     * @param card the card to be removed
+     * @return <tt>true</tt>, if the card could be removed
+     */
+    @Override
+    public boolean removeCard(Card card) {
+        boolean removed = super.removeCard(card);
+        if (removed) {
+            removeFromExpirationIndex(card);
+        }
+        return removed;
+    }
+
+    /**
+     * removes a card from the batch
+     * @param index the index where the card should be removed
+     * @return the removed card
+     */
+    @Override
+    public Card removeCard(int index) {
+        Card card = super.removeCard(index);
+        removeFromExpirationIndex(card);
+        return card;
+    }
+
+    /**
+     * empties the batch
+     */
+    @Override
+    public void clear() {
+        super.clear();
+        expirationIndex.clear();
+        expirationStart = 0;
+        expirationIndexValid = true;
+    }
+
+    /**
+     * returns a collection of all expired cards of this batch, the card that
+     * expired first comes first
      * @return a collection of all expired cards of this batch
      */
     public Collection<Card> getExpiredCards() {
-        refreshExpiration();
-        return expiredCards;
+        int numberOfExpiredCards = getNumberOfExpiredCards();
+        return new ArrayList<>(expirationIndex.subList(
+                expirationStart, expirationStart + numberOfExpiredCards));
     }
 
     /**
@@ -79,16 +173,11 @@ public class LongTermBatch extends Batch {
      * @return a collection of all learned (not new or expired) cards
      */
     public Collection<Card> getLearnedCards() {
-        Collection<Card> learnedCards = new ArrayList<>();
-        long currentTime = System.currentTimeMillis();
-        for (Card card : cards) {
-            long learnedTime = card.getLearnedTimestamp();
-            long diff = currentTime - learnedTime;
-            if (diff < expirationTime) {
-                learnedCards.add(card);
-            }
-        }
-        return learnedCards;
+        updateExpirationIndex();
+        long expirationThreshold = System.currentTimeMillis() - expirationTime;
+        int firstLearnedCard = upperBound(expirationThreshold);
+        return new ArrayList<>(expirationIndex.subList(
+                firstLearnedCard, expirationIndex.size()));
     }
 
     /**
@@ -96,46 +185,148 @@ public class LongTermBatch extends Batch {
      * @return the number of expired cards
      */
     public int getNumberOfExpiredCards() {
-        refreshExpiration();
-        return expiredCards.size();
+        updateExpirationIndex();
+        long expirationThreshold = System.currentTimeMillis() - expirationTime;
+        return lowerBound(expirationThreshold) - expirationStart;
+    }
+
+    /**
+     * returns the cards of this batch that expired within a period, the card
+     * that expired first comes first
+     * @param from the start of the period, cards that expired before are not
+     *             returned, {@link Long#MIN_VALUE} for all expired cards
+     * @param to   the end of the period
+     * @return the cards that expired within the period
+     */
+    List<Card> getCardsExpiredBetween(long from, long to) {
+        updateExpirationIndex();
+        int first = from == Long.MIN_VALUE
+                ? expirationStart : lowerBound(from - expirationTime);
+        int last = lowerBound(to - expirationTime);
+        if (first >= last) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<>(expirationIndex.subList(first, last));
+    }
+
+    /**
+     * returns the number of cards that were learned or repeated since a
+     * certain time
+     * @param time the time in milliseconds
+     * @return the number of cards that were learned or repeated since
+     * <CODE>time</CODE>
+     */
+    int getNumberOfCardsLearnedSince(long time) {
+        updateExpirationIndex();
+        return expirationIndex.size() - lowerBound(time);
     }
 
     /**
      * gets the oldest expired card
-     * @return the expired card
+     * @return the expired card or <CODE>null</CODE>, if there are no expired
+     * cards in this batch
      */
     public Card getOldestExpiredCard() {
-        refreshExpiration();
-        // return the card with the oldest expiration date
-        Iterator iterator = expiredCards.iterator();
-        Card oldestCard = (Card) iterator.next();
-        while (iterator.hasNext()) {
-            Card tmpCard = (Card) iterator.next();
-            if (tmpCard.getExpirationTime() < oldestCard.getExpirationTime()) {
-                oldestCard = tmpCard;
-            }
+        if (getNumberOfExpiredCards() == 0) {
+            return null;
         }
-        return oldestCard;
+        return expirationIndex.get(expirationStart);
     }
 
     /**
-     * recalculates the batch of expired cards
+     * returns the time when the next card of this batch expires
+     * @return the time when the next card of this batch expires or
+     * {@link Long#MAX_VALUE}, if this batch is empty
+     */
+    public long getNextExpirationTime() {
+        updateExpirationIndex();
+        if (expirationStart == expirationIndex.size()) {
+            return Long.MAX_VALUE;
+        }
+        return expirationIndex.get(expirationStart).getLearnedTimestamp() + expirationTime;
+    }
+
+    /**
+     * Invalidates the expiration index. Must be called when the learned
+     * timestamp of a card in this batch was changed. The index is rebuilt on
+     * the next query.
      */
     public void refreshExpiration() {
-        expiredCards.clear();
-        long currentTime = System.currentTimeMillis();
-        for (Card card : cards) {
+        expirationIndexValid = false;
+    }
 
-            long learnedTime = card.getLearnedTimestamp();
-            long diff = currentTime - learnedTime;
-            String frontSide = card.getFrontSide().getText();
-            //Log.d("LongTermBatch::refreshExpiration","currentTime = "+currentTime + ",cardTime=" 
-            //		+ learnedTime + ",diff=" + diff + ",expirationTime" + expirationTime + "," + frontSide);
+    private void updateExpirationIndex() {
+        if (!expirationIndexValid) {
+            expirationIndex.clear();
+            expirationStart = 0;
+            expirationIndex.addAll(cards);
+            Collections.sort(expirationIndex, learnedTimestampComparator);
+            expirationIndexValid = true;
+        }
+    }
+
+    private void removeFromExpirationIndex(Card card) {
+        if (!expirationIndexValid) {
+            return;
+        }
+        long learnedTime = card.getLearnedTimestamp();
+        for (int i = lowerBound(learnedTime), size = expirationIndex.size(); i < size; i++) {
+            Card indexedCard = expirationIndex.get(i);
+            if (indexedCard == card) {
+                if (i == expirationStart) {
+                    // the oldest card, usually while repeating expired cards
+                    expirationIndex.set(expirationStart++, null);
+                    if (expirationStart > size / 2) {
+                        expirationIndex.subList(0, expirationStart).clear();
+                        expirationStart = 0;
+                    }
+                } else {
+                    expirationIndex.remove(i);
+                }
+                return;
+            }
+            if (indexedCard.getLearnedTimestamp() != learnedTime) {
+                break;
+            }
+        }
+        // the timestamp was changed behind our back
+        expirationIndexValid = false;
+    }
 
-            if (diff > expirationTime) {
-                expiredCards.add(card);
+    /**
+     * returns the index of the first card in the expiration index that was
+     * learned at or after <CODE>learnedTime</CODE>
+     */
+    private int lowerBound(long learnedTime) {
+        int low = expirationStart;
+        int high = expirationIndex.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (expirationIndex.get(middle).getLearnedTimestamp() < learnedTime) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * returns the index of the first card in the expiration index that was
+     * learned after <CODE>learnedTime</CODE>
+     */
+    private int upperBound(long learnedTime) {
+        int low = expirationStart;
+        int high = expirationIndex.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (expirationIndex.get(middle).getLearnedTimestamp() <= learnedTime) {
+                low = middle + 1;
+            } else {
+                high = middle;
             }
         }
+        return low;
     }
 
     public static long getExpirationUnit() {
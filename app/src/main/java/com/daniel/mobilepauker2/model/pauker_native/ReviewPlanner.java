@@ -0,0 +1,243 @@
+package com.daniel.mobilepauker2.model.pauker_native;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * the plan of a session for repeating the expired cards of a lesson
+ * <p>
+ * The planner does not collect all expired cards up front. Every time more
+ * cards are needed it picks up the cards that expired since the last time
+ * from the expiration indices of the long term batches, so cards that
+ * expire during the session are repeated in the same session. An optional
+ * daily limit caps the number of cards that are repeated per day.
+ */
+public class ReviewPlanner {
+
+    /**
+     * the order in which the expired cards are repeated
+     */
+    public enum Order {
+
+        /**
+         * the card that expired last comes first
+         */
+        NEWEST_FIRST,
+        /**
+         * the card that expired first comes first
+         */
+        OLDEST_FIRST,
+        /**
+         * random order
+         */
+        RANDOM,
+        /**
+         * the cards of the lowest long term batch come first
+         */
+        BY_BATCH,
+        /**
+         * one card of every long term batch after the other
+         */
+        INTERLEAVED
+    }
+
+    private static final Comparator<Card> expirationComparator =
+            new Comparator<Card>() {
+
+                public int compare(Card card1, Card card2) {
+                    long expirationTime1 = card1.getExpirationTime();
+                    long expirationTime2 = card2.getExpirationTime();
+                    if (expirationTime1 < expirationTime2) {
+                        return -1;
+                    } else if (expirationTime1 > expirationTime2) {
+                        return 1;
+                    }
+                    return 0;
+                }
+            };
+    private static final Comparator<Card> batchComparator =
+            new Comparator<Card>() {
+
+                public int compare(Card card1, Card card2) {
+                    int batchNumber1 = card1.getLongTermBatchNumber();
+                    int batchNumber2 = card2.getLongTermBatchNumber();
+                    if (batchNumber1 != batchNumber2) {
+                        return batchNumber1 < batchNumber2 ? -1 : 1;
+                    }
+                    return expirationComparator.compare(card1, card2);
+                }
+            };
+    private final Lesson lesson;
+    private final Order order;
+    private final SplittableRandom random;
+    // the planned cards that were not handed out yet, in their order
+    private final List<Card> pendingCards;
+    // all cards that expired until this time are planned
+    private long plannedUntil;
+    private int remainingCards;
+
+    /**
+     * creates a new ReviewPlanner
+     * @param lesson     the lesson
+     * @param order      the order in which the cards are repeated
+     * @param dailyLimit the maximum number of cards that are repeated per
+     *                   day, the cards that were already repeated today count
+     *                   as well, 0 for no limit
+     * @param random     the source of randomness for {@link Order#RANDOM}
+     */
+    public ReviewPlanner(Lesson lesson, Order order, int dailyLimit,
+                         SplittableRandom random) {
+        this.lesson = lesson;
+        this.order = order;
+        this.random = random;
+        pendingCards = new ArrayList<>();
+        plannedUntil = Long.MIN_VALUE;
+        if (dailyLimit > 0) {
+            remainingCards = Math.max(0, dailyLimit - getNumberOfCardsRepeatedToday());
+        } else {
+            remainingCards = Integer.MAX_VALUE;
+        }
+    }
+
+    /**
+     * returns the next cards of the plan, including cards that expired
+     * since the last call
+     * @param maxCards the maximum number of cards
+     * @return the next cards, an empty list when there are no more expired
+     * cards or the daily limit is reached
+     */
+    public List<Card> nextCards(int maxCards) {
+        update(System.currentTimeMillis());
+        List<Card> nextCards = new ArrayList<>();
+        int taken = 0;
+        while (taken < pendingCards.size() && nextCards.size() < maxCards
+                && nextCards.size() < remainingCards) {
+            Card card = pendingCards.get(taken++);
+            // the card may have been forgotten or moved in the meantime
+            if (card.isLearned()) {
+                nextCards.add(card);
+            }
+        }
+        pendingCards.subList(0, taken).clear();
+        remainingCards -= nextCards.size();
+        return nextCards;
+    }
+
+    /**
+     * returns the number of cards that {@link #nextCards(int)} will still hand
+     * out, including cards that expired since the last call
+     * @return the number of planned cards that were not handed out yet,
+     * capped by the daily limit
+     */
+    public int getNumberOfRemainingCards() {
+        update(System.currentTimeMillis());
+        int numberOfCards = 0;
+        for (int i = 0; i < pendingCards.size() && numberOfCards < remainingCards; i++) {
+            if (pendingCards.get(i).isLearned()) {
+                numberOfCards++;
+            }
+        }
+        return numberOfCards;
+    }
+
+    /**
+     * plans the cards that expired since the last update
+     * @param now the current time
+     */
+    private void update(long now) {
+        if (now <= plannedUntil) {
+            return;
+        }
+        List<Card> expiredCards = new ArrayList<>();
+        for (LongTermBatch longTermBatch : lesson.getLongTermBatches()) {
+            expiredCards.addAll(longTermBatch.getCardsExpiredBetween(plannedUntil, now));
+        }
+        plannedUntil = now;
+        if (expiredCards.isEmpty()) {
+            return;
+        }
+
+        if (order == Order.RANDOM) {
+            // every new card goes to a random position, the order of the
+            // pending cards stays random
+            for (Card card : expiredCards) {
+                pendingCards.add(card);
+                int index = random.nextInt(pendingCards.size());
+                Collections.swap(pendingCards, index, pendingCards.size() - 1);
+            }
+            return;
+        }
+
+        pendingCards.addAll(expiredCards);
+        switch (order) {
+            case NEWEST_FIRST:
+                Collections.sort(pendingCards, Collections.reverseOrder(expirationComparator));
+                break;
+            case OLDEST_FIRST:
+                Collections.sort(pendingCards, expirationComparator);
+                break;
+            case BY_BATCH:
+                Collections.sort(pendingCards, batchComparator);
+                break;
+            case INTERLEAVED:
+                interleave();
+                break;
+        }
+    }
+
+    /**
+     * puts the pending cards into an order where the batches take turns,
+     * the cards of every batch keep the order in which they expired
+     */
+    private void interleave() {
+        Collections.sort(pendingCards, batchComparator);
+        List<List<Card>> batches = new ArrayList<>();
+        List<Card> batch = null;
+        int batchNumber = -1;
+        for (Card card : pendingCards) {
+            if (batch == null || card.getLongTermBatchNumber() != batchNumber) {
+                batch = new ArrayList<>();
+                batches.add(batch);
+                batchNumber = card.getLongTermBatchNumber();
+            }
+            batch.add(card);
+        }
+        pendingCards.clear();
+        for (int i = 0; !batches.isEmpty(); i++) {
+            for (int j = batches.size() - 1; j >= 0; j--) {
+                if (i >= batches.get(j).size()) {
+                    batches.remove(j);
+                }
+            }
+            for (List<Card> cards : batches) {
+                pendingCards.add(cards.get(i));
+            }
+        }
+    }
+
+    /**
+     * returns the number of cards that were repeated correctly today
+     * <p>
+     * A repeated card is moved to the next long term batch and gets a new
+     * learned timestamp, so these are the cards of all long term batches
+     * but the first that were learned today.
+     */
+    private int getNumberOfCardsRepeatedToday() {
+        Calendar today = Calendar.getInstance();
+        today.set(Calendar.HOUR_OF_DAY, 0);
+        today.set(Calendar.MINUTE, 0);
+        today.set(Calendar.SECOND, 0);
+        today.set(Calendar.MILLISECOND, 0);
+        long startOfDay = today.getTimeInMillis();
+        int numberOfCards = 0;
+        List<LongTermBatch> longTermBatches = lesson.getLongTermBatches();
+        for (int i = 1; i < longTermBatches.size(); i++) {
+            numberOfCards += longTermBatches.get(i).getNumberOfCardsLearnedSince(startOfDay);
+        }
+        return numberOfCards;
+    }
+}
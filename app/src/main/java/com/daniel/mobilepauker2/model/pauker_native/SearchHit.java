@@ -53,8 +53,8 @@ public class SearchHit {
             // class cast
             SearchHit otherSearchHit = (SearchHit) object;
 
-            // compare cards
-            if (!card.equals(otherSearchHit.getCard())) {
+            // compare cards (cards with the same content are still different cards)
+            if (card != otherSearchHit.getCard()) {
                 return false;
             }
 
@@ -86,7 +86,8 @@ public class SearchHit {
     @Override
     public int hashCode() {
         int hash = 7;
-        hash = 31 * hash + card.getId().hashCode();
+        long id = card.getId();
+        hash = 31 * hash + (int) (id ^ (id >>> 32));
         hash = 31 * hash + cardSide.ordinal();
         hash = 31 * hash + cardSideIndex;
         return hash;
@@ -0,0 +1,174 @@
+package com.daniel.mobilepauker2.model.pauker_native;
+
+import java.util.Arrays;
+
+/**
+ * the search hits of a batch, packed into a long array
+ * <p>
+ * Every hit is stored as a single long: the index of the card in the upper
+ * 32 bits, one bit for the card side and the index in the text of the card
+ * side in the lower 31 bits. Hits that are added card by card, front side
+ * before reverse side and text index by text index are therefore sorted, so
+ * a hit can be found by binary search.
+ */
+class SearchHitBuffer {
+
+    private static final long REVERSE_SIDE_BIT = 1L << 31;
+    private static final long TEXT_INDEX_MASK = REVERSE_SIDE_BIT - 1;
+    private static final long CARD_INDEX_UNIT = 1L << 32;
+
+    private long[] hits = new long[16];
+    private int size;
+
+    /**
+     * returns the packed hit for a match
+     * @param cardIndex the index of the card in the batch
+     * @param cardSide  the card side, either FRONT_SIDE or REVERSE_SIDE
+     * @param textIndex the index of the match in the text of the card side
+     * @return the packed hit
+     */
+    static long pack(int cardIndex, Card.Element cardSide, int textIndex) {
+        long hit = ((long) cardIndex << 32) | textIndex;
+        return cardSide == Card.Element.REVERSE_SIDE ? hit | REVERSE_SIDE_BIT : hit;
+    }
+
+    /**
+     * returns the index of the card of a packed hit
+     * @param hit the packed hit
+     * @return the index of the card in the batch
+     */
+    static int getCardIndex(long hit) {
+        return (int) (hit >>> 32);
+    }
+
+    /**
+     * returns the card side of a packed hit
+     * @param hit the packed hit
+     * @return the card side
+     */
+    static Card.Element getCardSide(long hit) {
+        return (hit & REVERSE_SIDE_BIT) == 0
+                ? Card.Element.FRONT_SIDE : Card.Element.REVERSE_SIDE;
+    }
+
+    /**
+     * returns the text index of a packed hit
+     * @param hit the packed hit
+     * @return the index of the match in the text of the card side
+     */
+    static int getTextIndex(long hit) {
+        return (int) (hit & TEXT_INDEX_MASK);
+    }
+
+    /**
+     * moves a packed hit to the new index of its card
+     * @param hit        the packed hit
+     * @param newIndices the new index for every old card index
+     * @return the moved hit
+     */
+    static long move(long hit, int[] newIndices) {
+        return ((long) newIndices[getCardIndex(hit)] << 32) | (hit & (CARD_INDEX_UNIT - 1));
+    }
+
+    /**
+     * appends a hit
+     * @param cardIndex the index of the card in the batch
+     * @param cardSide  the card side, either FRONT_SIDE or REVERSE_SIDE
+     * @param textIndex the index of the match in the text of the card side
+     */
+    void add(int cardIndex, Card.Element cardSide, int textIndex) {
+        if (size == hits.length) {
+            hits = Arrays.copyOf(hits, size * 2);
+        }
+        hits[size++] = pack(cardIndex, cardSide, textIndex);
+    }
+
+    /**
+     * appends all hits of another buffer
+     * @param otherHits the other hits, they must follow the hits of this
+     *                  buffer in card order
+     */
+    void addAll(SearchHitBuffer otherHits) {
+        if (size + otherHits.size > hits.length) {
+            hits = Arrays.copyOf(hits, Math.max(size + otherHits.size, hits.length * 2));
+        }
+        System.arraycopy(otherHits.hits, 0, hits, size, otherHits.size);
+        size += otherHits.size;
+    }
+
+    /**
+     * returns the packed hit at a position
+     * @param index the position of the hit
+     * @return the packed hit
+     */
+    long get(int index) {
+        return hits[index];
+    }
+
+    /**
+     * returns the number of hits
+     * @return the number of hits
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * removes all hits
+     */
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * returns the position of a packed hit
+     * @param hit the packed hit
+     * @return the position of the hit or -1, if there is no such hit
+     */
+    int indexOf(long hit) {
+        int index = Arrays.binarySearch(hits, 0, size, hit);
+        return index < 0 ? -1 : index;
+    }
+
+    /**
+     * removes the hits of a card that was removed from the batch and moves
+     * the hits of all following cards one index up
+     * @param cardIndex the index of the removed card
+     */
+    void removeCard(int cardIndex) {
+        int from = insertionPoint((long) cardIndex << 32);
+        int to = insertionPoint((long) (cardIndex + 1) << 32);
+        System.arraycopy(hits, to, hits, from, size - to);
+        size -= to - from;
+        for (int i = from; i < size; i++) {
+            hits[i] -= CARD_INDEX_UNIT;
+        }
+    }
+
+    /**
+     * moves the hits of all cards from an index on one index down, after a
+     * card was inserted at this index
+     * @param cardIndex the index of the inserted card
+     */
+    void insertCard(int cardIndex) {
+        for (int i = insertionPoint((long) cardIndex << 32); i < size; i++) {
+            hits[i] += CARD_INDEX_UNIT;
+        }
+    }
+
+    /**
+     * moves all hits to the new indices of their cards
+     * @param newIndices the new index for every old card index
+     */
+    void moveCards(int[] newIndices) {
+        for (int i = 0; i < size; i++) {
+            hits[i] = move(hits[i], newIndices);
+        }
+        Arrays.sort(hits, 0, size);
+    }
+
+    private int insertionPoint(long hit) {
+        int index = Arrays.binarySearch(hits, 0, size, hit);
+        return index < 0 ? -index - 1 : index;
+    }
+}
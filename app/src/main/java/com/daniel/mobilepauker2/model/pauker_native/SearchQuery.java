@@ -0,0 +1,107 @@
+package com.daniel.mobilepauker2.model.pauker_native;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * a search pattern, prepared once for searching all cards of a batch
+ * <p>
+ * The pattern is normalized or compiled when the query is created. A query
+ * may be used by several threads at once as long as every thread uses its
+ * own matcher.
+ */
+class SearchQuery {
+
+    // a letter, a digit or an underscore
+    private static final String WORD_CHARACTER = "[\\p{L}\\p{N}_]";
+
+    private final String pattern;
+    private final boolean matchCase;
+    private final Batch.SearchMode searchMode;
+    private final Pattern compiledPattern;
+
+    /**
+     * creates a new SearchQuery
+     * @param pattern    the search pattern
+     * @param matchCase  if true the search is case sensitive, otherwise case
+     *                   and accents are ignored
+     * @param searchMode the search mode
+     * @throws java.util.regex.PatternSyntaxException if the search mode is
+     *                                                REGULAR_EXPRESSION and
+     *                                                the pattern is not valid
+     */
+    SearchQuery(String pattern, boolean matchCase, Batch.SearchMode searchMode) {
+        this.matchCase = matchCase;
+        this.searchMode = searchMode;
+        switch (searchMode) {
+            case REGULAR_EXPRESSION:
+                // normalizing would change the meaning of the expression
+                this.pattern = pattern;
+                compiledPattern = Pattern.compile(pattern, matchCase
+                        ? 0 : Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+                break;
+            case WHOLE_WORD:
+                this.pattern = matchCase ? pattern : CardSide.normalize(pattern);
+                compiledPattern = Pattern.compile("(?<!" + WORD_CHARACTER + ")"
+                        + Pattern.quote(this.pattern) + "(?!" + WORD_CHARACTER + ")");
+                break;
+            case PREFIX:
+                this.pattern = matchCase ? pattern : CardSide.normalize(pattern);
+                compiledPattern = Pattern.compile("(?<!" + WORD_CHARACTER + ")"
+                        + Pattern.quote(this.pattern));
+                break;
+            default:
+                this.pattern = matchCase ? pattern : CardSide.normalize(pattern);
+                compiledPattern = null;
+        }
+    }
+
+    /**
+     * searches a range of cards
+     * @param cards      the cards of the batch
+     * @param from       the index of the first card to search
+     * @param to         the index after the last card to search
+     * @param cardSide   the side to search at
+     * @param searchHits the search hits, the hits are appended in card order
+     */
+    void search(Card[] cards, int from, int to, Card.Element cardSide,
+                SearchHitBuffer searchHits) {
+        Matcher matcher = compiledPattern == null ? null : compiledPattern.matcher("");
+        for (int i = from; i < to; i++) {
+            cards[i].search(cardSide, this, matcher, searchHits, i);
+        }
+    }
+
+    /**
+     * searches the text of a card side
+     * @param cardSide   the card side
+     * @param matcher    the matcher of the calling thread or <CODE>null</CODE>
+     *                   for plain substrings
+     * @param searchHits the search hits
+     * @param cardIndex  the index of the card in the batch
+     * @param side       the side of the card side
+     */
+    void search(CardSide cardSide, Matcher matcher, SearchHitBuffer searchHits,
+                int cardIndex, Card.Element side) {
+        // the normalized text may be shorter, its hits are mapped back
+        boolean normalized = !matchCase
+                && searchMode != Batch.SearchMode.REGULAR_EXPRESSION;
+        String text = normalized ? cardSide.getSearchText() : cardSide.getText();
+        if (text == null) {
+            return;
+        }
+        if (matcher == null) {
+            for (int index = text.indexOf(pattern); index != -1; ) {
+                searchHits.add(cardIndex, side,
+                        normalized ? cardSide.getTextIndex(index) : index);
+                index = text.indexOf(pattern, index + 1);
+            }
+        } else {
+            matcher.reset(text);
+            while (matcher.find()) {
+                searchHits.add(cardIndex, side, normalized
+                        ? cardSide.getTextIndex(matcher.start()) : matcher.start());
+            }
+        }
+    }
+}
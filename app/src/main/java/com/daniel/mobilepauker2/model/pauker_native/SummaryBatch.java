@@ -49,6 +49,7 @@ public class SummaryBatch extends Batch {
             Batch unlearnedBatch = lesson.getUnlearnedBatch();
             unlearnedBatch.removeCard(card);
         }
+        lesson.unregisterCard(card);
         return card;
     }
 }
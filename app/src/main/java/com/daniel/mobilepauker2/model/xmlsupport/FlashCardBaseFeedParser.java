@@ -2,6 +2,7 @@ package com.daniel.mobilepauker2.model.xmlsupport;
 
 import com.daniel.mobilepauker2.utils.Log;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
@@ -47,4 +48,23 @@ abstract class FlashCardBaseFeedParser implements IFlashCardFeedParser {
         return null;
 
     }
+
+    /**
+     * Reads the stream completely and closes it.
+     * @param inputStream the stream to read
+     * @return the read bytes
+     */
+    static byte[] readFully(InputStream inputStream) throws IOException {
+        try {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream(64 * 1024);
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, read);
+            }
+            return outputStream.toByteArray();
+        } finally {
+            inputStream.close();
+        }
+    }
 }
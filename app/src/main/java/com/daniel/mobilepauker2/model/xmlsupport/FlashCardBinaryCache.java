@@ -0,0 +1,329 @@
+package com.daniel.mobilepauker2.model.xmlsupport;
+
+import com.daniel.mobilepauker2.model.FlashCard;
+import com.daniel.mobilepauker2.model.pauker_native.Batch;
+import com.daniel.mobilepauker2.model.pauker_native.Card;
+import com.daniel.mobilepauker2.model.pauker_native.CardSide;
+import com.daniel.mobilepauker2.model.pauker_native.ComponentOrientation;
+import com.daniel.mobilepauker2.model.pauker_native.Font;
+import com.daniel.mobilepauker2.model.pauker_native.Lesson;
+import com.daniel.mobilepauker2.model.pauker_native.LongTermBatch;
+import com.daniel.mobilepauker2.utils.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Binary snapshot of a lesson that is stored next to its lesson file. The snapshot is only used
+ * while the lesson file still has the modification time and length it was written for, the XML
+ * file stays the format that is exchanged with other devices.
+ * <p>
+ * Layout: magic, version, modification time and length of the lesson file, description, table of
+ * orientations, table of fonts, the batches with their cards and a CRC32 of everything before.
+ * Strings are stored as length prefixed UTF-8, numbers as variable length integers.
+ */
+public class FlashCardBinaryCache {
+
+    private static final int MAGIC = 0x4D504243; // "MPBC"
+    private static final int VERSION = 1;
+    private static final String CACHE_ENDING = ".cache";
+
+    private static final int FLAG_FRONT_REPEAT_BY_TYPING = 1;
+    private static final int FLAG_REVERSE_REPEAT_BY_TYPING = 2;
+
+    private FlashCardBinaryCache() {
+    }
+
+    /**
+     * returns the cache file of a lesson file
+     * @param lessonFile the lesson file
+     * @return the hidden cache file in the directory of the lesson
+     */
+    public static File getCacheFile(File lessonFile) {
+        return new File(lessonFile.getParentFile(), "." + lessonFile.getName() + CACHE_ENDING);
+    }
+
+    /**
+     * Loads the lesson from its cache.
+     * @param lessonFile the lesson file
+     * @return the lesson or <CODE>null</CODE>, if there is no cache or it does not belong to the
+     * current lesson file
+     */
+    public static Lesson read(File lessonFile) {
+        File cacheFile = getCacheFile(lessonFile);
+        if (!cacheFile.isFile()) {
+            return null;
+        }
+
+        try {
+            byte[] data = readFile(cacheFile);
+            if (data.length < 4) {
+                return null;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(data, 0, data.length - 4);
+            if ((int) crc.getValue() != ByteBuffer.wrap(data, data.length - 4, 4).getInt()) {
+                Log.w("FlashCardBinaryCache::read", "Checksum mismatch, ignoring cache");
+                return null;
+            }
+
+            ByteBuffer in = ByteBuffer.wrap(data, 0, data.length - 4);
+            if (in.getInt() != MAGIC || in.getInt() != VERSION
+                    || in.getLong() != lessonFile.lastModified() || in.getLong() != lessonFile.length()) {
+                Log.d("FlashCardBinaryCache::read", "Cache is outdated");
+                return null;
+            }
+
+            Lesson lesson = new Lesson();
+            lesson.setDescription(readString(in));
+
+            String[] orientations = new String[readVarInt(in)];
+            for (int i = 0; i < orientations.length; i++) {
+                orientations[i] = readString(in);
+            }
+
+            int fontCount = readVarInt(in);
+            int[] fontValues = new int[fontCount * 3];
+            boolean[] fontStyles = new boolean[fontCount * 2];
+            String[] fontFamilies = new String[fontCount];
+            for (int i = 0; i < fontCount; i++) {
+                fontValues[i * 3] = in.getInt();
+                fontValues[i * 3 + 1] = in.getInt();
+                fontValues[i * 3 + 2] = readVarInt(in);
+                fontStyles[i * 2] = in.get() != 0;
+                fontStyles[i * 2 + 1] = in.get() != 0;
+                fontFamilies[i] = readString(in);
+            }
+
+            int batchCount = readVarInt(in);
+            for (int i = 0; i < batchCount; i++) {
+                int batchNumber = readVarInt(in);
+                int cardCount = readVarInt(in);
+                for (int j = 0; j < cardCount; j++) {
+                    FlashCard flashCard = new FlashCard();
+                    flashCard.setInitialBatch(batchNumber);
+                    int flags = in.get();
+                    flashCard.setRepeatByTyping((flags & FLAG_FRONT_REPEAT_BY_TYPING) != 0);
+                    flashCard.getReverseSide().setRepeatByTyping((flags & FLAG_REVERSE_REPEAT_BY_TYPING) != 0);
+
+                    for (CardSide side : new CardSide[]{flashCard.getFrontSide(), flashCard.getReverseSide()}) {
+                        side.setText(readString(in));
+                        side.setLearnedTimeStamp(readVarLong(in));
+                        side.setOrientation(new ComponentOrientation(orientations[readVarInt(in)]));
+                        int font = readVarInt(in) - 1;
+                        if (font >= 0) {
+                            // every side gets its own font, fonts are edited in place
+                            side.setFont(new Font(fontValues[font * 3], fontStyles[font * 2],
+                                    fontFamilies[font], fontValues[font * 3 + 1],
+                                    fontStyles[font * 2 + 1], fontValues[font * 3 + 2]));
+                        }
+                    }
+                    FlashCardXMLPullFeedParser.addCard(lesson, flashCard);
+                }
+            }
+            return lesson;
+
+        } catch (IOException | RuntimeException e) {
+            Log.w("FlashCardBinaryCache::read", "Cache not readable: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes the cache of a lesson. It contains what the lesson file contains, so it has to be
+     * written directly after the lesson was loaded from or saved to the file. Failures are only
+     * logged, the lesson file stays usable without its cache.
+     * @param lessonFile the lesson file the lesson was loaded from or saved to
+     * @param lesson     the lesson
+     */
+    public static void write(File lessonFile, Lesson lesson) {
+        File cacheFile = getCacheFile(lessonFile);
+        File tmpFile = new File(cacheFile.getParentFile(), cacheFile.getName() + ".tmp");
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * 1024);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(lessonFile.lastModified());
+            out.writeLong(lessonFile.length());
+            writeString(out, lesson.getDescription());
+
+            // the lesson file only contains the unlearned and the long term batches
+            List<Batch> batches = new ArrayList<>();
+            List<Integer> batchNumbers = new ArrayList<>();
+            batches.add(lesson.getUnlearnedBatch());
+            batchNumbers.add(0);
+            List<LongTermBatch> longTermBatches = lesson.getLongTermBatches();
+            for (int i = 0; i < longTermBatches.size(); i++) {
+                batches.add(longTermBatches.get(i));
+                batchNumbers.add(i + 3);
+            }
+
+            Map<String, Integer> orientations = new HashMap<>();
+            Map<String, Integer> fonts = new HashMap<>();
+            ByteArrayOutputStream fontBytes = new ByteArrayOutputStream();
+            DataOutputStream fontTable = new DataOutputStream(fontBytes);
+            ByteArrayOutputStream cardBytes = new ByteArrayOutputStream(64 * 1024);
+            DataOutputStream cards = new DataOutputStream(cardBytes);
+
+            writeVarInt(cards, batches.size());
+            for (int i = 0; i < batches.size(); i++) {
+                List<Card> batchCards = batches.get(i).getCards();
+                writeVarInt(cards, batchNumbers.get(i));
+                writeVarInt(cards, batchCards.size());
+                for (Card card : batchCards) {
+                    CardSide front = card.getFrontSide();
+                    CardSide reverse = card.getReverseSide();
+                    int flags = (front.isRepeatedByTyping() ? FLAG_FRONT_REPEAT_BY_TYPING : 0)
+                            | (reverse.isRepeatedByTyping() ? FLAG_REVERSE_REPEAT_BY_TYPING : 0);
+                    cards.writeByte(flags);
+
+                    writeSide(cards, front, card.isLearned() ? front.getLearnedTimestamp() : 0,
+                            orientations, fonts, fontTable);
+                    writeSide(cards, reverse, reverse.getLearnedTimestamp(),
+                            orientations, fonts, fontTable);
+                }
+            }
+
+            String[] orientationTable = new String[orientations.size()];
+            for (Map.Entry<String, Integer> entry : orientations.entrySet()) {
+                orientationTable[entry.getValue()] = entry.getKey();
+            }
+            writeVarInt(out, orientationTable.length);
+            for (String orientation : orientationTable) {
+                writeString(out, orientation);
+            }
+            writeVarInt(out, fonts.size());
+            fontTable.flush();
+            fontBytes.writeTo(out);
+            cards.flush();
+            cardBytes.writeTo(out);
+            out.flush();
+
+            CRC32 crc = new CRC32();
+            byte[] data = bytes.toByteArray();
+            crc.update(data, 0, data.length);
+
+            try (FileOutputStream fos = new FileOutputStream(tmpFile)) {
+                fos.write(data);
+                fos.write(ByteBuffer.allocate(4).putInt((int) crc.getValue()).array());
+            }
+            if (!tmpFile.renameTo(cacheFile)) {
+                throw new IOException("Renaming the cache failed");
+            }
+        } catch (IOException | RuntimeException e) {
+            Log.w("FlashCardBinaryCache::write", "Cache not written: " + e.getMessage());
+            //noinspection ResultOfMethodCallIgnored
+            tmpFile.delete();
+            delete(lessonFile);
+        }
+    }
+
+    /**
+     * Deletes the cache of a lesson file.
+     * @param lessonFile the lesson file
+     */
+    public static void delete(File lessonFile) {
+        File cacheFile = getCacheFile(lessonFile);
+        if (cacheFile.exists() && !cacheFile.delete()) {
+            Log.w("FlashCardBinaryCache::delete", "Cache not deleted: " + cacheFile.getName());
+        }
+    }
+
+    private static void writeSide(DataOutputStream out, CardSide side, long learnedTimestamp,
+                                  Map<String, Integer> orientations, Map<String, Integer> fonts,
+                                  DataOutputStream fontTable) throws IOException {
+        writeString(out, side.getText());
+        writeVarLong(out, learnedTimestamp);
+
+        String orientation = side.getOrientation().getOrientation();
+        Integer orientationIndex = orientations.get(orientation);
+        if (orientationIndex == null) {
+            orientationIndex = orientations.size();
+            orientations.put(orientation, orientationIndex);
+        }
+        writeVarInt(out, orientationIndex);
+
+        Font font = side.getFont();
+        if (font == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        String family = font.getFamily() == null ? "Dialog" : font.getFamily();
+        String key = font.getBackgroundColor() + ":" + font.getTextColor() + ":" + font.getTextSize()
+                + ":" + font.isBold() + ":" + font.isItalic() + ":" + family;
+        Integer fontIndex = fonts.get(key);
+        if (fontIndex == null) {
+            fontIndex = fonts.size();
+            fonts.put(key, fontIndex);
+            fontTable.writeInt(font.getBackgroundColor());
+            fontTable.writeInt(font.getTextColor());
+            writeVarInt(fontTable, font.getTextSize());
+            fontTable.writeBoolean(font.isBold());
+            fontTable.writeBoolean(font.isItalic());
+            writeString(fontTable, family);
+        }
+        writeVarInt(out, fontIndex + 1);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = readVarInt(in);
+        String value = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        writeVarLong(out, value & 0xFFFFFFFFL);
+    }
+
+    static int readVarInt(ByteBuffer in) {
+        return (int) readVarLong(in);
+    }
+
+    static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Malformed number");
+    }
+
+    static byte[] readFile(File file) throws IOException {
+        byte[] data = new byte[(int) file.length()];
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            in.readFully(data);
+        }
+        return data;
+    }
+}
@@ -1,11 +1,9 @@
 package com.daniel.mobilepauker2.model.xmlsupport;
 
-import android.util.SparseLongArray;
 import android.util.Xml;
 
 import com.daniel.mobilepauker2.model.FlashCard;
 import com.daniel.mobilepauker2.model.pauker_native.Batch;
-import com.daniel.mobilepauker2.model.pauker_native.Card;
 import com.daniel.mobilepauker2.model.pauker_native.ComponentOrientation;
 import com.daniel.mobilepauker2.model.pauker_native.Font;
 import com.daniel.mobilepauker2.model.pauker_native.Lesson;
@@ -14,11 +12,21 @@ import com.daniel.mobilepauker2.utils.Constants;
 import com.daniel.mobilepauker2.utils.Log;
 
 import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class FlashCardXMLPullFeedParser extends FlashCardBaseFeedParser {
 
@@ -26,32 +34,90 @@ public class FlashCardXMLPullFeedParser extends FlashCardBaseFeedParser {
         super(feedUrl);
     }
 
-    @SuppressWarnings("ConstantConditions")
     public Lesson parse() {
+        return parse(this.getInputStream(), null);
+    }
+
+    /**
+     * Parses the lesson with its batches spread over several threads. The file is
+     * decompressed once into memory and split at its batch elements. Every batch is read by
+     * its own pull parser and the cards are put into the lesson in batch order afterwards.
+     * If the file can not be split safely, it is parsed sequentially from memory.
+     * @param threads maximum number of threads used for parsing
+     * @return the loaded lesson
+     */
+    public Lesson parseConcurrently(int threads) {
+        final byte[] data;
+        try {
+            data = readFully(this.getInputStream());
+        } catch (IOException e) {
+            Log.e("FlashCardXMLPullFeedParser::parseConcurrently", e.getMessage(), e);
+            throw new RuntimeException(e);
+        }
+
+        int[] bounds = findBatchBounds(data);
+        if (bounds == null || bounds.length < 3 || threads < 2) {
+            Log.d("FlashCardXMLPullFeedParser::parseConcurrently", "parsing sequentially");
+            return parse(new ByteArrayInputStream(data), null);
+        }
+
+        int batches = bounds.length - 1;
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, batches));
+        try {
+            List<Future<List<FlashCard>>> results = new ArrayList<>(batches);
+            for (int i = 0; i < batches; i++) {
+                final int offset = bounds[i];
+                final int length = bounds[i + 1] - offset;
+                final int batchNumber = i;
+                results.add(executor.submit(new Callable<List<FlashCard>>() {
+                    @Override
+                    public List<FlashCard> call() throws Exception {
+                        return readBatch(data, offset, length, batchNumber);
+                    }
+                }));
+            }
+
+            Lesson lesson = new Lesson();
+            lesson.setDescription(readDescription(data, bounds[0]));
+            for (Future<List<FlashCard>> result : results) {
+                for (FlashCard flashCard : result.get()) {
+                    addCard(lesson, flashCard);
+                }
+            }
 
-        List<FlashCard> flashCards = null;
+            if (Log.isLoggable(Log.DEBUG)) {
+                printLessonToDebug(lesson);
+            }
+            return lesson;
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            Log.e("FlashCardXMLPullFeedParser::parseConcurrently", e.getMessage(), e.getCause());
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Lesson parse(InputStream inputStream, String inputEncoding) {
+
+        Lesson lesson = new Lesson();
         XmlPullParser parser = Xml.newPullParser();
         int batchCount = 0;
         String description = "No Description";
 
         try {
-            // auto-detect the encoding from the stream
-            parser.setInput(this.getInputStream(), null);
+            // auto-detect the encoding from the stream if none is given
+            parser.setInput(inputStream, inputEncoding);
             int eventType = parser.getEventType();
-            FlashCard currentFlashCard = null;
-
-            boolean SIDEA = false;
-            boolean SIDEB = false;
 
             boolean done = false;
             while (eventType != XmlPullParser.END_DOCUMENT && !done) {
 
                 String name;
                 switch (eventType) {
-                    case XmlPullParser.START_DOCUMENT:
-                        flashCards = new ArrayList<>();
-                        break;
-
                     case XmlPullParser.START_TAG:
                         name = parser.getName();
 
@@ -67,125 +133,16 @@ public class FlashCardXMLPullFeedParser extends FlashCardBaseFeedParser {
                                 description = "No description";
                             }
                         } else if (name.equalsIgnoreCase(FlashCardXMLPullFeedParser.CARD)) {
-                            currentFlashCard = new FlashCard();
+                            addCard(lesson, readCard(parser, batchCount - 1));
 
                         } else if (name.equalsIgnoreCase(FlashCardXMLPullFeedParser.BATCH)) {
                             batchCount++;
-
-                        } else if (currentFlashCard != null) {
-                            currentFlashCard.setInitialBatch(batchCount - 1); // This line is repeated many times!
-                            if (name.equalsIgnoreCase(FlashCardXMLPullFeedParser.FRONTSIDE) || name.equalsIgnoreCase(FlashCardXMLPullFeedParser.REVERSESIDE)) {
-                                String orientation = parser.getAttributeValue(null, "Orientation");
-                                orientation = orientation == null ? Constants.STANDARD_ORIENTATION : orientation;
-                                String repeatByTyping = parser.getAttributeValue(null, "RepeatByTyping");
-                                boolean bRepeatByTyping = repeatByTyping == null ? Constants.STANDARD_REPEAT : repeatByTyping.equals("true");
-                                String learnedTimestamp = parser.getAttributeValue(null, "LearnedTimestamp");
-
-                                if (name.equalsIgnoreCase(FlashCardXMLPullFeedParser.FRONTSIDE)) {
-                                    SIDEA = true;
-                                    SIDEB = false;
-
-                                    if (orientation != null) {
-                                        currentFlashCard.getFrontSide().setOrientation(new ComponentOrientation(orientation));
-                                    }
-
-                                    currentFlashCard.setRepeatByTyping(bRepeatByTyping);
-
-                                    if (learnedTimestamp != null) {
-                                        long l = Long.parseLong(learnedTimestamp.trim());
-                                        currentFlashCard.setLearnedTimeStamp(l);
-                                    }
-
-                                } else if (name.equalsIgnoreCase(FlashCardXMLPullFeedParser.REVERSESIDE)) {
-                                    SIDEA = false;
-                                    SIDEB = true;
-
-                                    if (orientation != null) {
-                                        currentFlashCard.getReverseSide().setOrientation(new ComponentOrientation(orientation));
-                                    }
-
-                                    currentFlashCard.getReverseSide().setRepeatByTyping(bRepeatByTyping);
-
-                                    if (learnedTimestamp != null) {
-                                        long l = Long.parseLong(learnedTimestamp.trim());
-                                        currentFlashCard.getReverseSide().setLearnedTimeStamp(l);
-                                    }
-                                }
-
-                                //Log.d("FlashCardXMLPullFeedParser::parse", "orientation=" + orientation);
-
-                            } else if (name.equalsIgnoreCase(FlashCardXMLPullFeedParser.TEXT)) {
-                                if (SIDEA) {
-                                    currentFlashCard.setSideAText(parser.nextText());
-                                    //Log.d("FlashCardXMLPullFeedParser::parse","sideA=" + currentFlashCard.getSideAText());
-
-                                } else if (SIDEB) {
-                                    currentFlashCard.setSideBText(parser.nextText());
-
-                                } else {
-                                    currentFlashCard.setSideAText("Empty");
-                                    currentFlashCard.setSideBText("Empty");
-                                }
-
-
-                                //Log.d("FlashCardXMLPullFeedParser::parse","sideB=" + currentFlashCard.getSideBText());
-                            } else if (name.equalsIgnoreCase(FlashCardXMLPullFeedParser.FONT)) {
-                                String background = parser.getAttributeValue(null, "Background");
-                                String bold = parser.getAttributeValue(null, "Bold");
-                                String family = parser.getAttributeValue(null, "Family");
-                                String foreground = parser.getAttributeValue(null, "Foreground");
-                                String italic = parser.getAttributeValue(null, "Italic");
-                                String size = parser.getAttributeValue(null, "Size");
-
-                                // Set to defaults if null
-                                if (background == null) {
-                                    background = "-1";
-                                }
-
-                                if (bold == null) {
-                                    bold = "false";
-                                }
-
-                                if (family == null) {
-                                    family = "Dialog";
-                                }
-
-                                if (foreground == null) {
-                                    foreground = "-16777216";
-                                }
-
-                                if (italic == null) {
-                                    italic = "false";
-                                }
-
-                                if (size == null) {
-                                    size = "12";
-                                }
-
-                                if (SIDEA) {
-                                    currentFlashCard.getFrontSide().setFont(new Font(background,
-                                            bold,
-                                            family,
-                                            foreground,
-                                            italic,
-                                            size));
-                                } else if (SIDEB) {
-                                    currentFlashCard.getReverseSide().setFont(new Font(background,
-                                            bold,
-                                            family,
-                                            foreground,
-                                            italic,
-                                            size));
-                                }
-                            }
                         }
                         break;
 
                     case XmlPullParser.END_TAG:
                         name = parser.getName();
-                        if (name.equalsIgnoreCase(CARD) && currentFlashCard != null) {
-                            flashCards.add(currentFlashCard);
-                        } else if (name.equalsIgnoreCase(LESSON)) {
+                        if (name.equalsIgnoreCase(LESSON)) {
                             done = true;
                         }
                         break;
@@ -193,7 +150,11 @@ public class FlashCardXMLPullFeedParser extends FlashCardBaseFeedParser {
                 eventType = parser.next();
             }
 
-            return setupLesson(flashCards, description);
+            lesson.setDescription(description);
+            if (Log.isLoggable(Log.DEBUG)) {
+                printLessonToDebug(lesson);
+            }
+            return lesson;
 
         } catch (Exception e) {
             Log.e("FlashCardXMLPullFeedParser:parse()", e.getMessage(), e);
@@ -201,154 +162,323 @@ public class FlashCardXMLPullFeedParser extends FlashCardBaseFeedParser {
         }
     }
 
-    private Lesson setupLesson(List<FlashCard> flashCardList, String description) {
-        Lesson newLesson = new Lesson();
-        Batch summaryBatch = newLesson.getSummaryBatch();
-
-        newLesson.setDescription(description);
+    /**
+     * Reads one card. The parser has to stand on the start tag of the card and stands on its
+     * end tag afterwards.
+     * @param parser       the parser to read from
+     * @param initialBatch number of the batch the card was stored in
+     * @return the card
+     */
+    private FlashCard readCard(XmlPullParser parser, int initialBatch) throws XmlPullParserException, IOException {
+        FlashCard currentFlashCard = new FlashCard();
+        currentFlashCard.setInitialBatch(initialBatch);
 
-        for (int i = 0; i < flashCardList.size(); i++) {
-            FlashCard flashCard = flashCardList.get(i);
+        boolean SIDEA = false;
+        boolean SIDEB = false;
 
-            if (flashCard.getInitialBatch() < 3) {
-                flashCard.setLearned(false);
-            } else {
-                flashCard.getFrontSide().setLearned(true); // Warning using flash card set learned here sets the learned timestamp!
+        int eventType = parser.next();
+        while (eventType != XmlPullParser.END_DOCUMENT) {
+            if (eventType == XmlPullParser.END_TAG && parser.getName().equalsIgnoreCase(CARD)) {
+                return currentFlashCard;
             }
 
-            if (newLesson.getNumberOfLongTermBatches() < (flashCard.getInitialBatch() - 2)) {
-                Log.d("FC~XMLPullFeedParser::setupLesson", "num of long term batches=" + newLesson.getNumberOfLongTermBatches());
-                Log.d("FC~XMLPullFeedParser::setupLesson", "card initla batch=" + flashCard.getInitialBatch());
+            if (eventType == XmlPullParser.START_TAG) {
+                String name = parser.getName();
 
-                int batchesToAdd = (flashCard.getInitialBatch() - 2) - newLesson.getNumberOfLongTermBatches();
-                Log.d("FC~XMLPullFeedParser::setupLesson", "batchsToAdd" + batchesToAdd);
+                if (name.equalsIgnoreCase(FlashCardXMLPullFeedParser.FRONTSIDE) || name.equalsIgnoreCase(FlashCardXMLPullFeedParser.REVERSESIDE)) {
+                    String orientation = parser.getAttributeValue(null, "Orientation");
+                    orientation = orientation == null ? Constants.STANDARD_ORIENTATION : orientation;
+                    String repeatByTyping = parser.getAttributeValue(null, "RepeatByTyping");
+                    boolean bRepeatByTyping = repeatByTyping == null ? Constants.STANDARD_REPEAT : repeatByTyping.equals("true");
+                    String learnedTimestamp = parser.getAttributeValue(null, "LearnedTimestamp");
 
-                for (int j = 0; j < batchesToAdd; j++) {
-                    newLesson.addLongTermBatch();
-                }
-            }
+                    if (name.equalsIgnoreCase(FlashCardXMLPullFeedParser.FRONTSIDE)) {
+                        SIDEA = true;
+                        SIDEB = false;
 
-            Batch batch;
-            if (flashCard.isLearned()) {
-                // must put the card into the corresponding long
-                // term batch
-                batch = newLesson.getLongTermBatch(
-                        flashCard.getInitialBatch() - 3);
-            } else {
-                // must put the card into the unlearned batch
-                batch = newLesson.getUnlearnedBatch();
-            }
-            batch.addCard(flashCard);
-            summaryBatch.addCard(flashCard);
+                        if (orientation != null) {
+                            currentFlashCard.getFrontSide().setOrientation(new ComponentOrientation(orientation));
+                        }
 
-            //Log.d("FlashCardXMLPullFeedParser::setupLesson" , "Added card to batch " + flashCard.getInitialBatch());
-        }
+                        currentFlashCard.setRepeatByTyping(bRepeatByTyping);
 
-        //newLesson.trim();
-        newLesson.refreshExpiration();
-        printLessonToDebug(newLesson);
+                        if (learnedTimestamp != null) {
+                            long l = Long.parseLong(learnedTimestamp.trim());
+                            currentFlashCard.setLearnedTimeStamp(l);
+                        }
 
-        return newLesson;
+                    } else if (name.equalsIgnoreCase(FlashCardXMLPullFeedParser.REVERSESIDE)) {
+                        SIDEA = false;
+                        SIDEB = true;
+
+                        if (orientation != null) {
+                            currentFlashCard.getReverseSide().setOrientation(new ComponentOrientation(orientation));
+                        }
+
+                        currentFlashCard.getReverseSide().setRepeatByTyping(bRepeatByTyping);
+
+                        if (learnedTimestamp != null) {
+                            long l = Long.parseLong(learnedTimestamp.trim());
+                            currentFlashCard.getReverseSide().setLearnedTimeStamp(l);
+                        }
+                    }
+
+                    //Log.d("FlashCardXMLPullFeedParser::readCard", "orientation=" + orientation);
+
+                } else if (name.equalsIgnoreCase(FlashCardXMLPullFeedParser.TEXT)) {
+                    if (SIDEA) {
+                        currentFlashCard.setSideAText(parser.nextText());
+                        //Log.d("FlashCardXMLPullFeedParser::readCard","sideA=" + currentFlashCard.getSideAText());
+
+                    } else if (SIDEB) {
+                        currentFlashCard.setSideBText(parser.nextText());
+
+                    } else {
+                        currentFlashCard.setSideAText("Empty");
+                        currentFlashCard.setSideBText("Empty");
+                    }
+
+
+                    //Log.d("FlashCardXMLPullFeedParser::readCard","sideB=" + currentFlashCard.getSideBText());
+                } else if (name.equalsIgnoreCase(FlashCardXMLPullFeedParser.FONT)) {
+                    String background = parser.getAttributeValue(null, "Background");
+                    String bold = parser.getAttributeValue(null, "Bold");
+                    String family = parser.getAttributeValue(null, "Family");
+                    String foreground = parser.getAttributeValue(null, "Foreground");
+                    String italic = parser.getAttributeValue(null, "Italic");
+                    String size = parser.getAttributeValue(null, "Size");
+
+                    // Set to defaults if null
+                    if (background == null) {
+                        background = "-1";
+                    }
+
+                    if (bold == null) {
+                        bold = "false";
+                    }
+
+                    if (family == null) {
+                        family = "Dialog";
+                    }
+
+                    if (foreground == null) {
+                        foreground = "-16777216";
+                    }
+
+                    if (italic == null) {
+                        italic = "false";
+                    }
+
+                    if (size == null) {
+                        size = "12";
+                    }
+
+                    if (SIDEA) {
+                        currentFlashCard.getFrontSide().setFont(new Font(background,
+                                bold,
+                                family,
+                                foreground,
+                                italic,
+                                size));
+                    } else if (SIDEB) {
+                        currentFlashCard.getReverseSide().setFont(new Font(background,
+                                bold,
+                                family,
+                                foreground,
+                                italic,
+                                size));
+                    }
+                }
+            }
+            eventType = parser.next();
+        }
+
+        throw new XmlPullParserException("Unexpected end of document inside a card");
     }
 
     /**
-     * Findet das nächste Ablaufdatum. Falls keines gefunden wird, wird {@link Long#MIN_VALUE}
-     * zurückgegeben.
-     * @return Eine Map mit dem frühesten Ablaufdatum <b>(index = 0)</b> und die Anzahl abgelaufener
-     * Karten (<b>index = 2)</b>
+     * Reads the cards of one batch element that was cut out of the decompressed lesson.
+     * @param data        the decompressed lesson
+     * @param offset      start of the batch element
+     * @param length      length of the batch element
+     * @param batchNumber number of the batch within the lesson
+     * @return the cards of the batch in file order
      */
-    public SparseLongArray getNextExpireDate() {
-
-        final XmlPullParser parser = Xml.newPullParser();
-        final SparseLongArray map = new SparseLongArray(2);
-        final long currentTimestamp = System.currentTimeMillis();
+    private List<FlashCard> readBatch(byte[] data, int offset, int length, int batchNumber)
+            throws XmlPullParserException, IOException {
+        XmlPullParser parser = Xml.newPullParser();
+        parser.setInput(new ByteArrayInputStream(data, offset, length), "UTF-8");
+        List<FlashCard> cards = new ArrayList<>();
+
+        int eventType = parser.getEventType();
+        while (eventType != XmlPullParser.END_DOCUMENT) {
+            if (eventType == XmlPullParser.START_TAG && parser.getName().equalsIgnoreCase(CARD)) {
+                cards.add(readCard(parser, batchNumber));
+            } else if (eventType == XmlPullParser.END_TAG && parser.getName().equalsIgnoreCase(BATCH)) {
+                break;
+            }
+            eventType = parser.next();
+        }
+        return cards;
+    }
 
+    /**
+     * Reads the description from the part of the lesson in front of the first batch.
+     * @param data   the decompressed lesson
+     * @param length length of the part in front of the first batch
+     * @return the description of the lesson
+     */
+    private String readDescription(byte[] data, int length) {
+        XmlPullParser parser = Xml.newPullParser();
         try {
-            // auto-detect the encoding from the stream
-            parser.setInput(this.getInputStream(), null);
+            parser.setInput(new ByteArrayInputStream(data, 0, length), null);
             int eventType = parser.getEventType();
-            long nextExpireTimeStamp = Long.MIN_VALUE;
-            int batchCount = 0;
-            long expiredCards = 0;
-
-            boolean done = false;
-            while (eventType != XmlPullParser.END_DOCUMENT && !done) {
-
-                String name;
-                switch (eventType) {
-                    case XmlPullParser.START_TAG:
-                        name = parser.getName();
-
-                        if (name.equalsIgnoreCase(FlashCardXMLPullFeedParser.LESSON)) {
-                            String lessonFormatString = parser.getAttributeValue(null, "LessonFormat");
-                            if (lessonFormatString != null) {
-                                float lessonFormat = Float.parseFloat(lessonFormatString);
-                                Log.d("FlashCardXMLPullFeedParser::parse", "Lesson format is " + lessonFormat);
-                            }
-                        } else if (name.equalsIgnoreCase(FlashCardXMLPullFeedParser.BATCH)) {
-                            batchCount++;
-                        } else if (name.equalsIgnoreCase(FlashCardXMLPullFeedParser.FRONTSIDE)
-                                || name.equalsIgnoreCase(FlashCardXMLPullFeedParser.REVERSESIDE)) {
-                            String learnedTimestamp = parser.getAttributeValue(null, "LearnedTimestamp");
-
-                            if (learnedTimestamp != null) {
-                                double factor = Math.pow(Math.E, batchCount - 4);
-                                long expirationTime = (long) (LongTermBatch.getExpirationUnit() * factor);
-                                try {
-                                    long expireTimeStamp = Long.parseLong(learnedTimestamp) + expirationTime;
-                                    if (nextExpireTimeStamp == Long.MIN_VALUE
-                                            || expireTimeStamp < nextExpireTimeStamp) {
-                                        nextExpireTimeStamp = expireTimeStamp;
-                                    }
-
-                                    long diff = currentTimestamp - Long.parseLong(learnedTimestamp);
-                                    if (diff > expirationTime) {
-                                        expiredCards++;
-                                    }
-
-                                } catch (NumberFormatException ignored) {}
-                            }
+            while (eventType != XmlPullParser.END_DOCUMENT) {
+                if (eventType == XmlPullParser.START_TAG
+                        && parser.getName().equalsIgnoreCase(DESCRIPTION)) {
+                    String description = parser.nextText();
+                    return description == null ? "No description" : description;
+                }
+                eventType = parser.next();
+            }
+        } catch (XmlPullParserException | IOException e) {
+            // the part is cut off in front of the first batch, so its elements are never closed
+            Log.d("FlashCardXMLPullFeedParser::readDescription", "no description found");
+        }
+        return "No Description";
+    }
 
-                        }
-                        break;
+    /**
+     * Finds the batch elements of a decompressed lesson.
+     * @param data the decompressed lesson
+     * @return the start offsets of all batch elements, followed by the offset of the end tag
+     * of the lesson. <CODE>null</CODE> if the lesson can not be split safely at its batches.
+     */
+    private static int[] findBatchBounds(byte[] data) {
+        if (!isUtf8(data)) {
+            return null;
+        }
 
-                    case XmlPullParser.END_TAG:
-                        name = parser.getName();
-                        if (name.equalsIgnoreCase(LESSON)) {
-                            done = true;
-                        }
-                        break;
+        int[] bounds = new int[16];
+        int count = 0;
+        int lessonEnd = -1;
+        for (int i = 0; i < data.length - 1; i++) {
+            if (data[i] != '<') {
+                continue;
+            }
+            if (data[i + 1] == '!') {
+                // comments, CDATA sections and doctypes may hide or declare markup
+                return null;
+            }
+            if (data[i + 1] == '/') {
+                lessonEnd = i;
+            } else if (startsWithTag(data, i + 1, BATCH)) {
+                if (count == bounds.length) {
+                    bounds = Arrays.copyOf(bounds, count * 2);
                 }
-                eventType = parser.next();
+                bounds[count++] = i;
             }
+        }
 
-            map.put(0, nextExpireTimeStamp);
-            map.put(1, expiredCards);
-            return map;
+        // the last end tag has to close the lesson behind the last batch
+        if (count == 0 || lessonEnd < bounds[count - 1] || !startsWithTag(data, lessonEnd + 2, LESSON)) {
+            return null;
+        }
+        bounds = Arrays.copyOf(bounds, count + 1);
+        bounds[count] = lessonEnd;
+        return bounds;
+    }
 
-        } catch (Exception e) {
-            Log.e("FlashCardXMLPullFeedParser:parse()", e.getMessage(), e);
-            throw new RuntimeException(e);
+    private static boolean startsWithTag(byte[] data, int offset, String tagName) {
+        int end = offset + tagName.length();
+        if (end >= data.length) {
+            return false;
+        }
+        for (int i = 0; i < tagName.length(); i++) {
+            if (Character.toLowerCase((char) data[offset + i]) != tagName.charAt(i)) {
+                return false;
+            }
         }
+        byte next = data[end];
+        return next == '>' || next == '/' || next == ' ' || next == '\t' || next == '\n' || next == '\r';
     }
 
-    private void printLessonToDebug(Lesson lesson) {
-        Collection<Card> cards = lesson.getLearnedCards();
-        Log.d("FlashCardXMLPullFeedParser::setupLesson", "Size of learned cards is " + cards.size());
+    /**
+     * Checks the XML declaration, the batches are parsed as UTF-8 without it.
+     * @param data the decompressed lesson
+     * @return <CODE>true</CODE> if the lesson is encoded in UTF-8
+     */
+    private static boolean isUtf8(byte[] data) {
+        String prolog = new String(data, 0, Math.min(data.length, 128), StandardCharsets.ISO_8859_1);
+        if (prolog.startsWith("\u00ef\u00bb\u00bf")) {
+            // byte order mark of UTF-8
+            prolog = prolog.substring(3);
+        }
+        if (!prolog.startsWith("<?xml")) {
+            return prolog.startsWith("<");
+        }
+        int declarationEnd = prolog.indexOf("?>");
+        if (declarationEnd < 0) {
+            return false;
+        }
+        String declaration = prolog.substring(0, declarationEnd).toLowerCase();
+        int encoding = declaration.indexOf("encoding");
+        return encoding < 0 || declaration.indexOf("utf-8", encoding) >= 0;
+    }
+
+    /**
+     * Puts a parsed card directly into its batch of the lesson.
+     * @param lesson    the lesson that is being loaded
+     * @param flashCard the card that was just read completely
+     */
+    static void addCard(Lesson lesson, FlashCard flashCard) {
+        int initialBatch = flashCard.getInitialBatch();
 
-        cards = lesson.getExpiredCards();
-        Log.d("FlashCardXMLPullFeedParser::setupLesson", "Size of expired cards is " + cards.size());
+        if (initialBatch < 3) {
+            flashCard.setLearned(false);
+        } else {
+            flashCard.getFrontSide().setLearned(true); // Warning using flash card set learned here sets the learned timestamp!
+        }
 
-        cards = lesson.getShortTermList();
-        Log.d("FlashCardXMLPullFeedParser::setupLesson", "Size of shortTerm cards is " + cards.size());
+        if (lesson.getNumberOfLongTermBatches() < (initialBatch - 2)) {
+            Log.d("FC~XMLPullFeedParser::addCard", "num of long term batches=" + lesson.getNumberOfLongTermBatches());
+            Log.d("FC~XMLPullFeedParser::addCard", "card initla batch=" + initialBatch);
 
-        cards = lesson.getCards();
-        Log.d("FlashCardXMLPullFeedParser::setupLesson", "Size of all cards is " + cards.size());
+            int batchesToAdd = (initialBatch - 2) - lesson.getNumberOfLongTermBatches();
+            Log.d("FC~XMLPullFeedParser::addCard", "batchsToAdd" + batchesToAdd);
 
-        cards = lesson.getUltraShortTermList();
-        Log.d("FlashCardXMLPullFeedParser::setupLesson", "Size of ultraShortTerm cards is " + cards.size());
+            for (int j = 0; j < batchesToAdd; j++) {
+                // the cards arrive in file order, so the expiration index is
+                // sorted once when it is first needed
+                lesson.addLongTermBatch().refreshExpiration();
+            }
+        }
 
-        Log.d("FlashCardXMLPullFeedParser::setupLesson", "Number of longterm batches is" + lesson.getLongTermBatches().size());
+        Batch batch;
+        if (flashCard.isLearned()) {
+            // must put the card into the corresponding long
+            // term batch
+            batch = lesson.getLongTermBatch(initialBatch - 3);
+        } else {
+            // must put the card into the unlearned batch
+            batch = lesson.getUnlearnedBatch();
+        }
+        batch.addCard(flashCard);
+        lesson.registerCard(flashCard);
+        lesson.getSummaryBatch().addCard(flashCard);
+    }
 
+    private void printLessonToDebug(Lesson lesson) {
+        // only the batch sizes, the expired cards are counted when they are needed and not while
+        // the lesson is loaded
+        Log.d("FlashCardXMLPullFeedParser::parse", "Size of unlearned cards is " + lesson.getUnlearnedBatch().getNumberOfCards());
+        for (LongTermBatch longTermBatch : lesson.getLongTermBatches()) {
+            Log.d("FlashCardXMLPullFeedParser::parse", "Size of longterm batch " + longTermBatch.getBatchNumber()
+                    + " is " + longTermBatch.getNumberOfCards());
+        }
+        Log.d("FlashCardXMLPullFeedParser::parse", "Size of shortTerm cards is " + lesson.getShortTermList().size());
+        Log.d("FlashCardXMLPullFeedParser::parse", "Size of all cards is " + lesson.getNumberOfBatchCards());
+        Log.d("FlashCardXMLPullFeedParser::parse", "Size of ultraShortTerm cards is " + lesson.getUltraShortTermList().size());
+        Log.d("FlashCardXMLPullFeedParser::parse", "Number of longterm batches is" + lesson.getLongTermBatches().size());
     }
 }
@@ -1,9 +1,9 @@
 package com.daniel.mobilepauker2.model.xmlsupport;
 
+import android.system.ErrnoException;
+import android.system.Os;
 import android.util.Xml;
 
-import com.daniel.mobilepauker2.PaukerManager;
-import com.daniel.mobilepauker2.model.ModelManager;
 import com.daniel.mobilepauker2.model.pauker_native.Batch;
 import com.daniel.mobilepauker2.model.pauker_native.Card;
 import com.daniel.mobilepauker2.model.pauker_native.Font;
@@ -13,59 +13,128 @@ import com.daniel.mobilepauker2.utils.Log;
 
 import org.xmlpull.v1.XmlSerializer;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 import java.util.zip.GZIPOutputStream;
 
 public class FlashCardXMLStreamWriter {
 
-    //TODO This sould de in a class of its own or in the Flash cardd xml stream writer...
-    public static void saveLesson() throws SecurityException {
-        final ModelManager modelManager = ModelManager.instance();
-        final PaukerManager paukerManager = PaukerManager.instance();
-        if (modelManager.isLessonNotNew()) {
-            // Neuen temporären Pfad, damit alte erstmal bestehen bleibt
-            String name = "neu_" + modelManager.getFilePath().getName();
-            String path = modelManager.getFilePath().getParent();
-            File newxmlfile = new File(path, name);
-
-            Log.d("ModelManager::saveLesson", "Filename = " + paukerManager.getCurrentFileName());
-            Log.d("ModelManager::saveLesson", "Directory= " + paukerManager.getFileAbsolutePath());
-            Log.d("ModelManager::saveLesson", "Directory= " + newxmlfile.getAbsolutePath());
-
-            GZIPOutputStream gzipOutputStream;
-            try {
-                if (!new File(path).exists() && !new File(path).mkdirs()) {
-                    return;
-                }
-                if (!newxmlfile.exists() && !newxmlfile.createNewFile()) {
-                    return;
-                }
-
-                FileOutputStream fos = new FileOutputStream(newxmlfile);
-                gzipOutputStream = new GZIPOutputStream(fos);
-                boolean isRenamed = false;
-                if (FlashCardXMLStreamWriter.writeXML(modelManager.getLesson(), gzipOutputStream)) {
-                    isRenamed = newxmlfile.renameTo(modelManager.getFilePath());
-                }
-                //noinspection ResultOfMethodCallIgnored
-                newxmlfile.delete();
-                if (!isRenamed) {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int BACKUP_COUNT = 2;
+
+    /**
+     * Schreibt eine Lektion in eine Datei. Die Lektion wird zuerst vollständig in eine temporäre
+     * Datei geschrieben und auf den Datenträger synchronisiert. Danach wird die alte Datei als
+     * Backup gesichert und die temporäre Datei umbenannt, so dass bei einem Absturz immer eine
+     * vollständige Version erhalten bleibt.
+     * @param lesson Die Lektion. Sie darf während des Schreibens nicht verändert werden.
+     * @param file   Die Lektionsdatei
+     */
+    public static void saveLesson(Lesson lesson, File file) throws SecurityException {
+        // Neuen temporären Pfad, damit alte erstmal bestehen bleibt
+        String name = "neu_" + file.getName();
+        String path = file.getParent();
+        File newxmlfile = new File(path, name);
+
+        Log.d("FlashCardXMLStreamWriter::saveLesson", "Filename = " + file.getName());
+        Log.d("FlashCardXMLStreamWriter::saveLesson", "Directory= " + newxmlfile.getAbsolutePath());
+
+        if (!new File(path).exists() && !new File(path).mkdirs()) {
+            throw new SecurityException("Saving not possible. Directory not created.");
+        }
 
+        try {
+            try (FileOutputStream fos = new FileOutputStream(newxmlfile);
+                 GZIPOutputStream gzipOutputStream = new GZIPOutputStream(
+                         new BufferedOutputStream(fos, BUFFER_SIZE), BUFFER_SIZE)) {
+                if (!FlashCardXMLStreamWriter.writeXML(lesson, gzipOutputStream)) {
                     throw new SecurityException("Saving not possible. Unkown error.");
                 }
+                // GZIP-Trailer schreiben und alles auf den Datenträger bringen, bevor umbenannt wird
+                gzipOutputStream.finish();
+                gzipOutputStream.flush();
+                fos.getChannel().force(true);
+            }
 
-                gzipOutputStream.close();
-            } catch (FileNotFoundException e) {
-                Log.e("ModelManager::saveLesson", "can't create FileOutputStream");
-                throw new RuntimeException(e);
-            } catch (IOException e) {
-                Log.e("ModelManager::saveLesson", "exception in saveLesson() method");
-                throw new RuntimeException(e);
+            rotateBackups(file);
+            if (!newxmlfile.renameTo(file)) {
+                throw new SecurityException("Saving not possible. Unkown error.");
+            }
+        } catch (IOException e) {
+            Log.e("FlashCardXMLStreamWriter::saveLesson", "exception in saveLesson() method");
+            throw new RuntimeException(e);
+        } finally {
+            if (newxmlfile.exists() && !newxmlfile.delete()) {
+                Log.w("FlashCardXMLStreamWriter::saveLesson", "Temporary file not deleted");
+            }
+        }
+
+        FlashCardBinaryCache.write(file, lesson);
+        LessonSummary.write(file, lesson);
+    }
+
+    /**
+     * Löscht die Backups einer Lektionsdatei.
+     * @param file Die Lektionsdatei
+     */
+    public static void deleteBackups(File file) {
+        for (int i = 1; i <= BACKUP_COUNT; i++) {
+            File backup = getBackupFile(file, i);
+            if (backup.exists() && !backup.delete()) {
+                Log.w("FlashCardXMLStreamWriter::deleteBackups", "Backup not deleted: " + backup.getName());
+            }
+        }
+    }
+
+    private static File getBackupFile(File file, int generation) {
+        return new File(file.getParentFile(), "." + file.getName() + ".bak" + generation);
+    }
+
+    /**
+     * Verschiebt die vorhandenen Backups um eine Generation und legt für die aktuelle Datei einen
+     * harten Link als erstes Backup an. So bleibt die Datei bis zum Umbenennen der neuen Version
+     * bestehen, ohne dass sie kopiert werden muss. Nur wenn das Dateisystem keine harten Links
+     * unterstützt, wird die Datei kopiert.
+     * @param file Die Lektionsdatei
+     */
+    private static void rotateBackups(File file) throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+
+        for (int i = BACKUP_COUNT; i > 1; i--) {
+            File older = getBackupFile(file, i - 1);
+            if (older.exists() && !older.renameTo(getBackupFile(file, i))) {
+                Log.w("FlashCardXMLStreamWriter::rotateBackups", "Backup not rotated: " + older.getName());
+            }
+        }
+
+        File backup = getBackupFile(file, 1);
+        if (backup.exists() && !backup.delete()) {
+            Log.w("FlashCardXMLStreamWriter::rotateBackups", "Backup not deleted: " + backup.getName());
+        }
+        try {
+            Os.link(file.getPath(), backup.getPath());
+            return;
+        } catch (ErrnoException e) {
+            Log.d("FlashCardXMLStreamWriter::rotateBackups", "No hard link, copying: " + e.getMessage());
+        }
+
+        try (FileInputStream in = new FileInputStream(file);
+             FileOutputStream out = new FileOutputStream(backup)) {
+            FileChannel source = in.getChannel();
+            FileChannel target = out.getChannel();
+            long size = source.size();
+            long position = 0;
+            while (position < size) {
+                position += source.transferTo(position, size - position, target);
             }
+            target.force(true);
         }
     }
 
@@ -130,7 +199,6 @@ public class FlashCardXMLStreamWriter {
             serializer.endDocument();
 
             serializer.flush();
-            outputStream.close();
 
             return true;
         } catch (Exception e) {
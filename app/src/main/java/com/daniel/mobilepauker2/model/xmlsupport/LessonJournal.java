@@ -0,0 +1,405 @@
+package com.daniel.mobilepauker2.model.xmlsupport;
+
+import com.daniel.mobilepauker2.model.pauker_native.Batch;
+import com.daniel.mobilepauker2.model.pauker_native.Card;
+import com.daniel.mobilepauker2.model.pauker_native.Lesson;
+import com.daniel.mobilepauker2.model.pauker_native.LongTermBatch;
+import com.daniel.mobilepauker2.utils.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of the learning progress since a lesson file was written. Every time a
+ * card is moved into the unlearned batch or into a long term batch a small record is appended,
+ * so the progress survives without rewriting the whole lesson file. The records are replayed when
+ * the lesson is loaded and dropped when the lesson file is written again.
+ * <p>
+ * Cards are identified by their position in the lesson file, i.e. the unlearned batch followed by
+ * the long term batches. Cards that are not yet stored in the lesson file can not be journaled.
+ * <p>
+ * Layout: magic, version, modification time and length of the lesson file, followed by records
+ * of card position, target batch, insert position, learned timestamp and a CRC32 of the record.
+ * The journal ends at the first incomplete or damaged record.
+ * <p>
+ * The journal file stays open for appending until the journal is closed or replaced by a
+ * compaction, so journaling a move is a single small write.
+ * <p>
+ * All methods have to be called on the main thread.
+ */
+public class LessonJournal {
+
+    public static final int UNLEARNED_BATCH = -1;
+
+    private static final int MAGIC = 0x4D504A4E; // "MPJN"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8;
+    private static final int RECORD_SIZE = 4 + 4 + 4 + 8 + 4;
+    private static final String JOURNAL_ENDING = ".journal";
+    private static final int COMPACTION_THRESHOLD = 1000;
+
+    private final File lessonFile;
+    private Map<Card, Integer> positions;
+    private int numberOfRecords;
+    // the compactions of the lesson files that are being written, oldest first
+    private final List<Compaction> compactions = new ArrayList<>();
+    private int numberOfCompactions = 0;
+    // the open journal file or null, if it is opened with the next record
+    private FileOutputStream out = null;
+
+    private LessonJournal(File lessonFile, Map<Card, Integer> positions) {
+        this.lessonFile = lessonFile;
+        this.positions = positions;
+    }
+
+    /**
+     * Opens the journal of a lesson that was just loaded from its file and replays the
+     * journaled progress onto the lesson.
+     * @param lessonFile the lesson file
+     * @param lesson     the lesson as it is stored in the lesson file
+     * @return the journal of the lesson
+     */
+    public static LessonJournal open(File lessonFile, Lesson lesson) {
+        List<Card> cards = getStoredCards(lesson);
+        LessonJournal journal = new LessonJournal(lessonFile, getPositions(cards));
+
+        File journalFile = getJournalFile(lessonFile);
+        if (!journalFile.isFile()) {
+            return journal;
+        }
+
+        try {
+            ByteBuffer in = ByteBuffer.wrap(FlashCardBinaryCache.readFile(journalFile));
+            if (in.remaining() < HEADER_SIZE || in.getInt() != MAGIC || in.getInt() != VERSION
+                    || in.getLong() != lessonFile.lastModified() || in.getLong() != lessonFile.length()) {
+                Log.d("LessonJournal::open", "Journal does not belong to the lesson file");
+                delete(lessonFile);
+                return journal;
+            }
+
+            CRC32 crc = new CRC32();
+            while (in.remaining() >= RECORD_SIZE) {
+                crc.reset();
+                crc.update(in.array(), in.position(), RECORD_SIZE - 4);
+                int position = in.getInt();
+                int targetBatch = in.getInt();
+                int index = in.getInt();
+                long learnedTimestamp = in.getLong();
+                if (in.getInt() != (int) crc.getValue() || position < 0 || position >= cards.size()) {
+                    Log.w("LessonJournal::open", "Damaged record, ignoring the rest of the journal");
+                    break;
+                }
+                replay(lesson, cards.get(position), targetBatch, index, learnedTimestamp);
+                journal.numberOfRecords++;
+            }
+            Log.d("LessonJournal::open", "Replayed " + journal.numberOfRecords + " records");
+
+        } catch (IOException | RuntimeException e) {
+            Log.w("LessonJournal::open", "Journal not readable: " + e.getMessage());
+        }
+        return journal;
+    }
+
+    /**
+     * Creates an empty journal for a lesson that is about to be written to a file for the first
+     * time. The journal is usable after the first compaction has finished.
+     * @param lessonFile the lesson file
+     * @return the journal of the lesson
+     */
+    public static LessonJournal create(File lessonFile) {
+        return new LessonJournal(lessonFile, new IdentityHashMap<Card, Integer>());
+    }
+
+    /**
+     * Deletes the journal of a lesson file.
+     * @param lessonFile the lesson file
+     */
+    public static void delete(File lessonFile) {
+        File journalFile = getJournalFile(lessonFile);
+        if (journalFile.exists() && !journalFile.delete()) {
+            Log.w("LessonJournal::delete", "Journal not deleted: " + journalFile.getName());
+        }
+    }
+
+    /**
+     * returns the lesson file of this journal
+     * @return the lesson file of this journal
+     */
+    public File getLessonFile() {
+        return lessonFile;
+    }
+
+    /**
+     * Appends the move of a card to the journal. The card has to be moved already.
+     * @param card        the moved card
+     * @param targetBatch the number of the long term batch or {@link #UNLEARNED_BATCH}
+     * @param index       the position in the unlearned batch, ignored for long term batches
+     * @return <CODE>true</CODE>, if the journal grew large and the lesson should be saved
+     */
+    public boolean cardMoved(Card card, int targetBatch, int index) {
+        long learnedTimestamp = card.getLearnedTimestamp();
+        Integer position = positions.get(card);
+        if (position != null) {
+            if (out == null) {
+                out = openJournal();
+            }
+            if (out != null && append(out, position, targetBatch, index, learnedTimestamp)) {
+                numberOfRecords++;
+            }
+        }
+        for (Compaction compaction : compactions) {
+            compaction.cardMoved(card, targetBatch, index, learnedTimestamp);
+        }
+        return numberOfRecords >= COMPACTION_THRESHOLD && compactions.isEmpty();
+    }
+
+    /**
+     * Drops the journal after the lesson was changed in a way that is not journaled (e.g. all
+     * cards were reset or flipped). Replaying the journal onto the lesson file would mix the
+     * states before and after the change. The running compactions are dropped as well, because
+     * their lesson files are written from snapshots taken before the change. Moves are journaled
+     * again after the lesson was written the next time.
+     */
+    public void invalidate() {
+        for (Compaction compaction : compactions) {
+            compaction.discard();
+        }
+        compactions.clear();
+        close();
+        delete(lessonFile);
+        positions = new IdentityHashMap<>();
+        numberOfRecords = 0;
+    }
+
+    /**
+     * Closes the journal file. The next record opens it again.
+     */
+    public void close() {
+        if (out != null) {
+            close(out);
+            out = null;
+        }
+    }
+
+    /**
+     * Starts a compaction when a snapshot of the lesson is taken to be written to the lesson file.
+     * Until the compaction is finished every move is journaled for the current and for the new
+     * lesson file. Compactions that were started before keep running until their lesson files
+     * are written.
+     * @param storedCards the cards of the snapshot in the order they are written to the file
+     * @return the compaction
+     */
+    public Compaction beginCompaction(List<Card> storedCards) {
+        Compaction compaction = new Compaction(getPositions(storedCards), numberOfCompactions++);
+        compactions.add(compaction);
+        return compaction;
+    }
+
+    /**
+     * Finishes a compaction after the lesson file was written. The journal of the new lesson
+     * file replaces the current one. Older compactions that are still running are dropped, their
+     * lesson files have been overwritten.
+     * @param finished the compaction
+     */
+    public void finishCompaction(Compaction finished) {
+        int index = compactions.indexOf(finished);
+        if (index == -1) {
+            return;
+        }
+        for (int i = 0; i < index; i++) {
+            compactions.get(i).discard();
+        }
+        compactions.subList(0, index + 1).clear();
+        close();
+        finished.close();
+
+        File journalFile = getJournalFile(lessonFile);
+        try (RandomAccessFile file = new RandomAccessFile(finished.file, "rw")) {
+            file.seek(8);
+            file.writeLong(lessonFile.lastModified());
+            file.writeLong(lessonFile.length());
+        } catch (IOException e) {
+            Log.w("LessonJournal::finishCompaction", "Journal not updated: " + e.getMessage());
+            finished.discard();
+            delete(lessonFile);
+            positions = finished.positions;
+            numberOfRecords = 0;
+            return;
+        }
+
+        if (!finished.file.renameTo(journalFile)) {
+            Log.w("LessonJournal::finishCompaction", "Journal not replaced");
+            finished.discard();
+            delete(lessonFile);
+        }
+        positions = finished.positions;
+        numberOfRecords = finished.numberOfRecords;
+    }
+
+    /**
+     * Drops a compaction after writing the lesson file failed.
+     * @param failed the compaction
+     */
+    public void abortCompaction(Compaction failed) {
+        if (compactions.remove(failed)) {
+            failed.discard();
+        }
+    }
+
+    /**
+     * opens the journal file for appending, a new journal file gets the header of the current
+     * lesson file
+     * @return the journal file or <CODE>null</CODE>, if it can not be opened
+     */
+    private FileOutputStream openJournal() {
+        File journalFile = getJournalFile(lessonFile);
+        if (!journalFile.isFile()
+                && !writeHeader(journalFile, lessonFile.lastModified(), lessonFile.length())) {
+            return null;
+        }
+        try {
+            return new FileOutputStream(journalFile, true);
+        } catch (IOException e) {
+            Log.w("LessonJournal::openJournal", "Journal not opened: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static void close(FileOutputStream out) {
+        try {
+            out.close();
+        } catch (IOException e) {
+            Log.w("LessonJournal::close", "Journal not closed: " + e.getMessage());
+        }
+    }
+
+    private static File getJournalFile(File lessonFile) {
+        return new File(lessonFile.getParentFile(), "." + lessonFile.getName() + JOURNAL_ENDING);
+    }
+
+    /**
+     * returns the cards in the order they are stored in the lesson file
+     * @param lesson the lesson
+     * @return the cards of the unlearned batch followed by the cards of the long term batches
+     */
+    private static List<Card> getStoredCards(Lesson lesson) {
+        List<Card> cards = new ArrayList<>(lesson.getUnlearnedBatch().getCards());
+        for (LongTermBatch longTermBatch : lesson.getLongTermBatches()) {
+            cards.addAll(longTermBatch.getCards());
+        }
+        return cards;
+    }
+
+    private static Map<Card, Integer> getPositions(List<Card> cards) {
+        Map<Card, Integer> positions = new IdentityHashMap<>(cards.size() * 2);
+        for (int i = 0; i < cards.size(); i++) {
+            positions.put(cards.get(i), i);
+        }
+        return positions;
+    }
+
+    private static void replay(Lesson lesson, Card card, int targetBatch, int index, long learnedTimestamp) {
+        if (card.isLearned()) {
+            lesson.getLongTermBatch(card.getLongTermBatchNumber()).removeCard(card);
+        } else {
+            lesson.getUnlearnedBatch().removeCard(card);
+        }
+
+        if (targetBatch == UNLEARNED_BATCH) {
+            card.setLearned(false);
+            Batch unlearnedBatch = lesson.getUnlearnedBatch();
+            unlearnedBatch.addCard(Math.max(0, Math.min(index, unlearnedBatch.getNumberOfCards())), card);
+        } else {
+            while (lesson.getNumberOfLongTermBatches() <= targetBatch) {
+                lesson.addLongTermBatch();
+            }
+            card.setLearned(true);
+            card.setLearnedTimeStamp(learnedTimestamp);
+            lesson.getLongTermBatch(targetBatch).addCard(card);
+        }
+    }
+
+    private static boolean writeHeader(File journalFile, long lastModified, long length) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putLong(lastModified).putLong(length);
+        try (FileOutputStream out = new FileOutputStream(journalFile)) {
+            out.write(header.array());
+            return true;
+        } catch (IOException e) {
+            Log.w("LessonJournal::writeHeader", "Journal not created: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static boolean append(FileOutputStream out, int position, int targetBatch, int index,
+                                  long learnedTimestamp) {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        record.putInt(position).putInt(targetBatch).putInt(index).putLong(learnedTimestamp);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 0, RECORD_SIZE - 4);
+        record.putInt((int) crc.getValue());
+
+        try {
+            out.write(record.array());
+            return true;
+        } catch (IOException e) {
+            Log.w("LessonJournal::append", "Record not written: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Journal of the lesson file that is currently being written.
+     */
+    public class Compaction {
+        private final Map<Card, Integer> positions;
+        private final File file;
+        private FileOutputStream out = null;
+        private int numberOfRecords = 0;
+
+        private Compaction(Map<Card, Integer> positions, int number) {
+            this.positions = positions;
+            File journalFile = getJournalFile(lessonFile);
+            file = new File(journalFile.getParentFile(), journalFile.getName() + ".next" + number);
+
+            // the header gets the modification time of the lesson file when it is written
+            if (writeHeader(file, 0, -1)) {
+                try {
+                    out = new FileOutputStream(file, true);
+                } catch (IOException e) {
+                    Log.w("LessonJournal::Compaction", "Journal not opened: " + e.getMessage());
+                }
+            }
+        }
+
+        private void cardMoved(Card card, int targetBatch, int index, long learnedTimestamp) {
+            Integer position = positions.get(card);
+            if (position != null && out != null
+                    && append(out, position, targetBatch, index, learnedTimestamp)) {
+                numberOfRecords++;
+            }
+        }
+
+        private void close() {
+            if (out != null) {
+                LessonJournal.close(out);
+                out = null;
+            }
+        }
+
+        private void discard() {
+            close();
+            if (file.exists() && !file.delete()) {
+                Log.w("LessonJournal::Compaction", "Journal not deleted: " + file.getName());
+            }
+        }
+    }
+}
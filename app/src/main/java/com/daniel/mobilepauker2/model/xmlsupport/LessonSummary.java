@@ -0,0 +1,232 @@
+package com.daniel.mobilepauker2.model.xmlsupport;
+
+import com.daniel.mobilepauker2.model.pauker_native.Card;
+import com.daniel.mobilepauker2.model.pauker_native.Lesson;
+import com.daniel.mobilepauker2.model.pauker_native.LongTermBatch;
+import com.daniel.mobilepauker2.utils.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Small index of a lesson file with the numbers the lesson browser shows. It is stored in a
+ * hidden file next to the lesson and belongs to the modification time and length of the lesson
+ * file it was created for.
+ * <p>
+ * Layout: magic, version, modification time and length of the lesson file, number of cards,
+ * sizes of the unlearned and the long term batches and the sorted expiration times of all
+ * learned cards. The expiration times are stored as differences to their predecessor.
+ */
+public class LessonSummary {
+
+    private static final int MAGIC = 0x4D50534D; // "MPSM"
+    private static final int VERSION = 1;
+    private static final String SUMMARY_ENDING = ".summary";
+
+    private final long lastModified;
+    private final long length;
+    private final int numberOfCards;
+    private final int[] batchSizes;
+    private final long[] expirationTimes;
+
+    private LessonSummary(long lastModified, long length, int numberOfCards, int[] batchSizes,
+                          long[] expirationTimes) {
+        this.lastModified = lastModified;
+        this.length = length;
+        this.numberOfCards = numberOfCards;
+        this.batchSizes = batchSizes;
+        this.expirationTimes = expirationTimes;
+    }
+
+    /**
+     * creates the summary of a lesson that was just loaded from or saved to a file
+     * @param lessonFile the lesson file
+     * @param lesson     the lesson
+     * @return the summary of the lesson
+     */
+    public static LessonSummary create(File lessonFile, Lesson lesson) {
+        List<LongTermBatch> longTermBatches = lesson.getLongTermBatches();
+        int[] batchSizes = new int[longTermBatches.size() + 1];
+        batchSizes[0] = lesson.getUnlearnedBatch().getNumberOfCards();
+
+        int learnedCards = 0;
+        for (int i = 0; i < longTermBatches.size(); i++) {
+            batchSizes[i + 1] = longTermBatches.get(i).getNumberOfCards();
+            learnedCards += batchSizes[i + 1];
+        }
+
+        long[] expirationTimes = new long[learnedCards];
+        int index = 0;
+        for (LongTermBatch longTermBatch : longTermBatches) {
+            for (Card card : longTermBatch.getCards()) {
+                expirationTimes[index++] = card.getExpirationTime();
+            }
+        }
+        Arrays.sort(expirationTimes);
+
+        return new LessonSummary(lessonFile.lastModified(), lessonFile.length(),
+                batchSizes[0] + learnedCards, batchSizes, expirationTimes);
+    }
+
+    /**
+     * Returns the summary of a lesson file. If the stored summary is missing or belongs to an
+     * older version of the file, the lesson is loaded once and its summary is stored.
+     * @param lessonFile the lesson file
+     * @return the summary of the lesson file
+     */
+    public static LessonSummary forFile(File lessonFile) throws MalformedURLException {
+        LessonSummary summary = read(lessonFile);
+        if (summary != null) {
+            return summary;
+        }
+
+        Lesson lesson = FlashCardBinaryCache.read(lessonFile);
+        if (lesson == null) {
+            lesson = new FlashCardXMLPullFeedParser(lessonFile.toURI().toURL()).parse();
+        }
+        summary = create(lessonFile, lesson);
+        summary.write(lessonFile);
+        return summary;
+    }
+
+    /**
+     * creates and stores the summary of a lesson that was just loaded from or saved to a file
+     * @param lessonFile the lesson file
+     * @param lesson     the lesson
+     */
+    public static void write(File lessonFile, Lesson lesson) {
+        create(lessonFile, lesson).write(lessonFile);
+    }
+
+    /**
+     * Deletes the summary of a lesson file.
+     * @param lessonFile the lesson file
+     */
+    public static void delete(File lessonFile) {
+        File summaryFile = getSummaryFile(lessonFile);
+        if (summaryFile.exists() && !summaryFile.delete()) {
+            Log.w("LessonSummary::delete", "Summary not deleted: " + summaryFile.getName());
+        }
+    }
+
+    private static File getSummaryFile(File lessonFile) {
+        return new File(lessonFile.getParentFile(), "." + lessonFile.getName() + SUMMARY_ENDING);
+    }
+
+    private static LessonSummary read(File lessonFile) {
+        File summaryFile = getSummaryFile(lessonFile);
+        if (!summaryFile.isFile()) {
+            return null;
+        }
+
+        try {
+            ByteBuffer in = ByteBuffer.wrap(FlashCardBinaryCache.readFile(summaryFile));
+            long lastModified;
+            long length;
+            if (in.getInt() != MAGIC || in.getInt() != VERSION
+                    || (lastModified = in.getLong()) != lessonFile.lastModified()
+                    || (length = in.getLong()) != lessonFile.length()) {
+                return null;
+            }
+
+            int numberOfCards = FlashCardBinaryCache.readVarInt(in);
+            int[] batchSizes = new int[FlashCardBinaryCache.readVarInt(in)];
+            for (int i = 0; i < batchSizes.length; i++) {
+                batchSizes[i] = FlashCardBinaryCache.readVarInt(in);
+            }
+            long[] expirationTimes = new long[FlashCardBinaryCache.readVarInt(in)];
+            long expirationTime = 0;
+            for (int i = 0; i < expirationTimes.length; i++) {
+                expirationTime += FlashCardBinaryCache.readVarLong(in);
+                expirationTimes[i] = expirationTime;
+            }
+            return new LessonSummary(lastModified, length, numberOfCards, batchSizes, expirationTimes);
+
+        } catch (IOException | RuntimeException e) {
+            Log.w("LessonSummary::read", "Summary not readable: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void write(File lessonFile) {
+        File summaryFile = getSummaryFile(lessonFile);
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(lastModified);
+            out.writeLong(length);
+            FlashCardBinaryCache.writeVarInt(out, numberOfCards);
+            FlashCardBinaryCache.writeVarInt(out, batchSizes.length);
+            for (int batchSize : batchSizes) {
+                FlashCardBinaryCache.writeVarInt(out, batchSize);
+            }
+            FlashCardBinaryCache.writeVarInt(out, expirationTimes.length);
+            long previous = 0;
+            for (long expirationTime : expirationTimes) {
+                FlashCardBinaryCache.writeVarLong(out, expirationTime - previous);
+                previous = expirationTime;
+            }
+            out.flush();
+
+            try (FileOutputStream fos = new FileOutputStream(summaryFile)) {
+                bytes.writeTo(fos);
+            }
+        } catch (IOException e) {
+            Log.w("LessonSummary::write", "Summary not written: " + e.getMessage());
+            delete(lessonFile);
+        }
+    }
+
+    /**
+     * returns the number of cards in the lesson
+     * @return the number of cards in the lesson
+     */
+    public int getNumberOfCards() {
+        return numberOfCards;
+    }
+
+    /**
+     * returns the sizes of the batches
+     * @return the size of the unlearned batch followed by the sizes of the long term batches
+     */
+    public int[] getBatchSizes() {
+        return batchSizes.clone();
+    }
+
+    /**
+     * returns the next expiration time
+     * @return the earliest expiration time of all learned cards or {@link Long#MIN_VALUE}, if no
+     * card was learned yet
+     */
+    public long getNextExpirationTime() {
+        return expirationTimes.length == 0 ? Long.MIN_VALUE : expirationTimes[0];
+    }
+
+    /**
+     * returns the number of expired cards
+     * @param currentTime the current time
+     * @return the number of cards that expired before <CODE>currentTime</CODE>
+     */
+    public int getNumberOfExpiredCards(long currentTime) {
+        int low = 0;
+        int high = expirationTimes.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (expirationTimes[middle] < currentTime) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
@@ -29,12 +29,16 @@ public class ChartAdapter extends RecyclerView.Adapter<ChartAdapter.ViewHolder>
     private final ChartAdapterCallback callback;
     private final Context context;
     private final int lessonSize;
+    private final int expiredCardsSize;
+    private final int unlearnedBatchSize;
     private final List<ChartBar> chartBars;
 
     public ChartAdapter(Context context, ChartAdapterCallback callback) {
         this.context = context;
         batchStatistics = modelManager.getBatchStatistics();
         lessonSize = modelManager.getLessonSize();
+        expiredCardsSize = modelManager.getExpiredCardsSize();
+        unlearnedBatchSize = modelManager.getUnlearnedBatchSize();
         this.callback = callback;
         chartBars = new ArrayList<>(getItemCount());
     }
@@ -58,14 +62,14 @@ public class ChartAdapter extends RecyclerView.Adapter<ChartAdapter.ViewHolder>
         switch (position) {
             case 0:
                 titel = context.getResources().getString(R.string.sum);
-                abgl = modelManager.getExpiredCardsSize();
-                ungel = modelManager.getUnlearnedBatchSize();
+                abgl = expiredCardsSize;
+                ungel = unlearnedBatchSize;
                 gel = lessonSize - abgl - ungel;
                 chartBar.show(context, titel, lessonSize, gel, ungel, abgl, lessonSize);
                 break;
             case 1:
                 titel = context.getResources().getString(R.string.untrained);
-                ungel = modelManager.getUnlearnedBatchSize();
+                ungel = unlearnedBatchSize;
                 chartBar.show(context, titel, ungel, -1, ungel, -1, lessonSize);
                 break;
             default:
@@ -47,14 +47,14 @@ public class Constants {
     public static final int REQUEST_CODE_SAVE_DIALOG_OPEN = 6;
     public static final int REQUEST_CODE_DB_ACC_DIALOG = 7;
 
-    // Messagekey für den Handler
-    public static final String MESSAGE_BOOL_KEY = "RESULT";
-    public static final String MESSAGE_MSG_KEY = "MSG";
-
     // Keys
     public static final String CURSOR_POSITION = "CURSOR_POSITION";
     public static final String LAST_TEXT_COLOR_CHOICE = "LAST_TEXT_COLOR_CHOICE";
     public static final String LAST_BACK_COLOR_CHOICE = "LAST_BACK_COLOR_CHOICE";
     public static final String KEEP_OPEN_KEY = "KEEP_OPEN_KEY";
+    // Paralleles Einlesen großer Lektionen (Dateigröße in Bytes)
+    public static final long PARALLEL_LOAD_MIN_FILE_SIZE = 128 * 1024;
+    public static final int PARALLEL_LOAD_MAX_THREADS = 4;
+
     public static final String[] PAUKER_FILE_ENDING = {".pau.gz", ".xml.gz", ".pau"};
 }
@@ -17,6 +17,10 @@ public class Log {
 
     public static final int logLevel = VERBOSE;
 
+    public static boolean isLoggable(int level) {
+        return enableLog && logLevel <= level;
+    }
+
     public static void i(String tag, String msg) {
         if (!enableLog || logLevel > INFO) {
             return;
@@ -0,0 +1,64 @@
+package com.daniel.mobilepauker2.model.pauker_native;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BatchTest {
+
+    private static Batch newBatch(int numberOfCards) {
+        List<Card> cards = new ArrayList<>();
+        for (int i = 0; i < numberOfCards; i++) {
+            CardSide frontSide = new CardSide();
+            frontSide.setText("card " + (numberOfCards - i));
+            cards.add(new Card(frontSide, new CardSide()));
+        }
+        return new Batch(cards);
+    }
+
+    private static void assertCardsFound(Batch batch) {
+        List<Card> cards = new ArrayList<>(batch.getCards());
+        for (int i = 0; i < cards.size(); i++) {
+            assertEquals(i, batch.indexOf(cards.get(i)));
+        }
+        for (Card card : cards) {
+            assertTrue(batch.removeCard(card));
+        }
+        assertEquals(0, batch.getNumberOfCards());
+    }
+
+    @Test
+    public void sortedCardsCanBeRemoved() {
+        Batch batch = newBatch(300);
+
+        batch.sortCards(Card.Element.FRONT_SIDE, true);
+
+        assertCardsFound(batch);
+    }
+
+    @Test
+    public void shuffledCardsCanBeRemoved() {
+        Batch batch = newBatch(300);
+
+        batch.shuffle(new int[]{0, 1, 2});
+
+        assertCardsFound(batch);
+    }
+
+    @Test
+    public void searchHitsMoveWithSortedCards() {
+        Batch batch = newBatch(300);
+        batch.search("card 7", true, Card.Element.FRONT_SIDE);
+        int numberOfHits = batch.getNumberOfSearchHits();
+
+        batch.sortCards(Card.Element.FRONT_SIDE, true);
+
+        assertEquals(numberOfHits, batch.getNumberOfSearchHits());
+        int cardIndex = batch.getCurrentSearchHitCardIndex();
+        assertTrue(batch.getCard(cardIndex).getFrontSide().getText().contains("card 7"));
+    }
+}
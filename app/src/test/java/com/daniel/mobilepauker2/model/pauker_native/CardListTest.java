@@ -0,0 +1,102 @@
+package com.daniel.mobilepauker2.model.pauker_native;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CardListTest {
+
+    private static List<Card> newCards(int numberOfCards) {
+        List<Card> cards = new ArrayList<>();
+        for (int i = 0; i < numberOfCards; i++) {
+            // all cards have the same content, so only identity tells them apart
+            cards.add(new Card(new CardSide(), new CardSide()));
+        }
+        return cards;
+    }
+
+    private static void assertIndexed(CardList cardList, List<Card> expected) {
+        assertEquals(expected.size(), cardList.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Card card = expected.get(i);
+            assertSame(card, cardList.get(i));
+            assertTrue(cardList.contains(card));
+            assertEquals(i, cardList.indexOf(card));
+        }
+    }
+
+    @Test
+    public void swapKeepsBothCardsIndexed() {
+        List<Card> cards = newCards(2);
+        CardList cardList = new CardList(cards);
+
+        Collections.swap(cardList, 0, 1);
+
+        Collections.swap(cards, 0, 1);
+        assertIndexed(cardList, cards);
+        assertTrue(cardList.remove(cards.get(1)));
+        assertIndexed(cardList, cards.subList(0, 1));
+    }
+
+    @Test
+    public void sortAndShuffleKeepAllCardsIndexed() {
+        // several chunks
+        List<Card> cards = newCards(1000);
+        CardList cardList = new CardList(cards);
+
+        Collections.shuffle(cardList, new Random(1));
+        List<Card> shuffled = new ArrayList<>(cardList);
+        assertIndexed(cardList, shuffled);
+
+        Collections.reverse(cardList);
+        Collections.reverse(shuffled);
+        assertIndexed(cardList, shuffled);
+
+        for (Card card : cards) {
+            assertTrue(cardList.remove(card));
+        }
+        assertEquals(0, cardList.size());
+    }
+
+    @Test
+    public void setReplacesCard() {
+        List<Card> cards = newCards(3);
+        CardList cardList = new CardList(cards.subList(0, 2));
+
+        assertSame(cards.get(0), cardList.set(0, cards.get(2)));
+
+        assertFalse(cardList.contains(cards.get(0)));
+        assertEquals(-1, cardList.indexOf(cards.get(0)));
+        assertFalse(cardList.remove(cards.get(0)));
+        assertIndexed(cardList, Arrays.asList(cards.get(2), cards.get(1)));
+    }
+
+    @Test
+    public void insertAndRemoveAcrossChunks() {
+        List<Card> cards = newCards(600);
+        CardList cardList = new CardList();
+        List<Card> expected = new ArrayList<>();
+        Random random = new Random(2);
+        for (Card card : cards) {
+            int index = random.nextBoolean() ? 0 : random.nextInt(expected.size() + 1);
+            cardList.add(index, card);
+            expected.add(index, card);
+        }
+        assertIndexed(cardList, expected);
+
+        for (int i = 0; i < 400; i++) {
+            Card card = expected.remove(random.nextInt(expected.size()));
+            assertTrue(cardList.remove(card));
+        }
+        assertIndexed(cardList, expected);
+    }
+}
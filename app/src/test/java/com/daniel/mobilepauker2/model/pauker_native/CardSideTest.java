@@ -0,0 +1,53 @@
+package com.daniel.mobilepauker2.model.pauker_native;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CardSideTest {
+
+    private static CardSide newCardSide(String text) {
+        CardSide cardSide = new CardSide();
+        cardSide.setText(text);
+        return cardSide;
+    }
+
+    @Test
+    public void accentsAreRemovedFromLatinGreekAndCyrillic() {
+        assertEquals("cafes", newCardSide("Caf\u00e9s").getSearchText());
+        // already decomposed
+        assertEquals("cafes", newCardSide("Cafe\u0301s").getSearchText());
+        assertEquals("αθηνα", newCardSide("Αθήνα").getSearchText());
+        assertEquals("елка", newCardSide("Ёлка").getSearchText());
+    }
+
+    @Test
+    public void otherScriptsAreKept() {
+        assertEquals("한", CardSide.normalize("한"));
+        assertFalse(CardSide.normalize("호").contains(CardSide.normalize("한")));
+        assertEquals("が", CardSide.normalize("が"));
+        assertEquals("ぱ", CardSide.normalize("ぱ"));
+        assertFalse(CardSide.normalize("か").contains(CardSide.normalize("が")));
+    }
+
+    @Test
+    public void searchHitsPointIntoTheText() {
+        CardSide cardSide = newCardSide("Cafe\u0301s und caf\u00e9s");
+        String searchText = cardSide.getSearchText();
+        assertEquals("cafes und cafes", searchText);
+        assertEquals(0, cardSide.getTextIndex(searchText.indexOf("cafes")));
+        assertEquals(7, cardSide.getTextIndex(searchText.indexOf("und")));
+        assertEquals(11, cardSide.getTextIndex(searchText.lastIndexOf("cafes")));
+
+        List<Card> cards = new ArrayList<>();
+        cards.add(new Card(cardSide, new CardSide()));
+        Batch batch = new Batch(cards);
+        assertTrue(batch.search("und", false, Card.Element.FRONT_SIDE));
+        assertEquals(7, batch.getCurrentSearchHit().getCardSideIndex());
+    }
+}